@@ -0,0 +1,74 @@
+package android.graphics;
+
+/**
+ * JVM stand-in of android.graphics.Path for benchmarks. Keeps the points so the
+ * generation work can not be optimized away.
+ */
+public class Path {
+
+    private float[] points = new float[64];
+    private int count;
+
+    public Path() {
+    }
+
+    public Path(Path src) {
+        set(src);
+    }
+
+    public void set(Path src) {
+        points = src.points.clone();
+        count = src.count;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    public void rewind() {
+        count = 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void moveTo(float x, float y) {
+        add(x, y);
+    }
+
+    public void lineTo(float x, float y) {
+        add(x, y);
+    }
+
+    public void quadTo(float x1, float y1, float x2, float y2) {
+        add(x1, y1);
+        add(x2, y2);
+    }
+
+    public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+        add(x1, y1);
+        add(x2, y2);
+        add(x3, y3);
+    }
+
+    public void close() {
+    }
+
+    /**
+     * @return number of stored points
+     */
+    public int getPointCount() {
+        return count / 2;
+    }
+
+    private void add(float x, float y) {
+        if (count + 2 > points.length) {
+            float[] grown = new float[points.length * 2];
+            System.arraycopy(points, 0, grown, 0, count);
+            points = grown;
+        }
+        points[count++] = x;
+        points[count++] = y;
+    }
+}
@@ -0,0 +1,68 @@
+package net.grobas.benchmark;
+
+import net.grobas.view.util.GeometryUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circle and line intersection, boxed and primitive versions, and polygon hit testing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeometryBenchmark {
+
+    private final float[] out = new float[4];
+    private float pointX = 180f;
+    //hexagon sampled like a hit outline, 8 points per vertex
+    private final float[] outline = sampleHexagon(48);
+    private float touchX = 100f;
+
+    @Benchmark
+    public List<GeometryUtil.Point> intersectionPoints() {
+        pointX = pointX == 180f ? 181f : 180f;
+        return GeometryUtil.getCircleLineIntersectionPoint(new GeometryUtil.Point(pointX, 40f),
+                new GeometryUtil.Point(100f, 100f), new GeometryUtil.Point(100f, 100f), 72f);
+    }
+
+    @Benchmark
+    public float intersectionArray() {
+        pointX = pointX == 180f ? 181f : 180f;
+        GeometryUtil.getCircleLineIntersectionPoint(pointX, 40f, 100f, 100f, 100f, 100f, 72f, out);
+        return out[0];
+    }
+
+    @Benchmark
+    public boolean hitTest() {
+        touchX = touchX >= 190f ? 10f : touchX + 1f;
+        return GeometryUtil.isInsidePolygon(outline, 48, touchX, 120f);
+    }
+
+    private static float[] sampleHexagon(int samples) {
+        float[] points = new float[samples * 2];
+        int perEdge = samples / 6;
+        for (int i = 0; i < samples; i++) {
+            int edge = i / perEdge;
+            float t = (float) (i % perEdge) / perEdge;
+            double a = Math.PI / 3 * edge;
+            double b = Math.PI / 3 * (edge + 1);
+            points[i * 2] = (float) (100 + 90 * (Math.cos(a) + (Math.cos(b) - Math.cos(a)) * t));
+            points[i * 2 + 1] = (float) (100 + 90 * (Math.sin(a) + (Math.sin(b) - Math.sin(a)) * t));
+        }
+        return points;
+    }
+}
@@ -0,0 +1,67 @@
+package net.grobas.benchmark;
+
+import android.graphics.Path;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline for {@link ShapePathBenchmark#rebuild()}: the regular polygon generation
+ * before vertex tables, with cos/sin calls for every vertex and rotation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LegacyPathBenchmark {
+
+    @Param({"3", "6", "16", "64"})
+    public int vertices;
+
+    @Param({"0", "37.5"})
+    public float rotation;
+
+    private final Path path = new Path();
+    private boolean flip;
+
+    @Benchmark
+    public Path rebuild() {
+        flip = !flip;
+        float diameter = flip ? 180f : 181f;
+        float centerX = 100f, centerY = 100f;
+        float pointX, pointY, rotatedPointX, rotatedPointY;
+        double angleRadians = Math.toRadians(rotation);
+
+        path.reset();
+        int i = 0;
+        do {
+            pointX = centerX + diameter / 2f * (float) Math.cos(2 * Math.PI * i / vertices);
+            pointY = centerY + diameter / 2f * (float) Math.sin(2 * Math.PI * i / vertices);
+            rotatedPointX = (float) (Math.cos(angleRadians) * (pointX - centerX) -
+                    Math.sin(angleRadians) * (pointY - centerY) + centerX);
+            rotatedPointY = (float) (Math.sin(angleRadians) * (pointX - centerX) +
+                    Math.cos(angleRadians) * (pointY - centerY) + centerY);
+
+            if (i == 0)
+                path.moveTo(rotatedPointX, rotatedPointY);
+            else
+                path.lineTo(rotatedPointX, rotatedPointY);
+            i++;
+        } while (i <= vertices);
+        path.close();
+
+        return path;
+    }
+}
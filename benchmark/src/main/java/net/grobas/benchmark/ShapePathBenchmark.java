@@ -0,0 +1,94 @@
+package net.grobas.benchmark;
+
+import android.graphics.Path;
+
+import net.grobas.shapes.BasePolygonShape;
+import net.grobas.shapes.PaperPolygonShape;
+import net.grobas.shapes.PolygonPathCache;
+import net.grobas.shapes.PolygonShapeSpec;
+import net.grobas.shapes.RegularPolygonShape;
+import net.grobas.shapes.StarPolygonShape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path generation of the built-in shapes, the work rotation animations do every frame.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShapePathBenchmark {
+
+    @Param({"regular", "star", "concave", "paper"})
+    public String shape;
+
+    @Param({"3", "6", "16", "64"})
+    public int vertices;
+
+    @Param({"0", "37.5"})
+    public float rotation;
+
+    private BasePolygonShape polygonShape;
+    private PolygonShapeSpec spec;
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        //measure generation, not path sharing
+        PolygonPathCache.setMaxSize(0);
+        polygonShape = createShape(shape);
+        spec = new PolygonShapeSpec(100f, 100f, 180f, vertices, rotation);
+    }
+
+    /**
+     * Size changes on every call, the path is regenerated at the same angle.
+     */
+    @Benchmark
+    public Path rebuild() {
+        flip = !flip;
+        spec.setDiameter(flip ? 180f : 181f);
+        return polygonShape.getPolygonPath(spec);
+    }
+
+    /**
+     * Angle changes on every call like a rotation animation.
+     */
+    @Benchmark
+    public Path rotate() {
+        spec.setRotation((spec.getRotation() + 1f) % 360f);
+        return polygonShape.getPolygonPath(spec);
+    }
+
+    /**
+     * Same geometry, the memoized path is returned.
+     */
+    @Benchmark
+    public Path unchanged() {
+        return polygonShape.getPolygonPath(spec);
+    }
+
+    static BasePolygonShape createShape(String name) {
+        if ("star".equals(name))
+            return new StarPolygonShape(0.8f, false);
+        if ("concave".equals(name))
+            return new StarPolygonShape(0.8f, true);
+        if ("paper".equals(name))
+            return new PaperPolygonShape(-15, 25);
+        return new RegularPolygonShape();
+    }
+}
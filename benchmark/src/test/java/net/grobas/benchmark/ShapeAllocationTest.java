@@ -0,0 +1,101 @@
+package net.grobas.benchmark;
+
+import net.grobas.shapes.BasePolygonShape;
+import net.grobas.shapes.PaperPolygonShape;
+import net.grobas.shapes.PolygonPathCache;
+import net.grobas.shapes.PolygonShapeSpec;
+import net.grobas.shapes.RegularPolygonShape;
+import net.grobas.shapes.StarPolygonShape;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Path rebuilds of the built-in shapes must not allocate, they run on every animation frame.
+ * Allocations are measured with the HotSpot per thread counter. One-off allocations of the VM,
+ * e.g. late compilations, can land in any round, the best round must be allocation free.
+ */
+public class ShapeAllocationTest {
+
+    private static final int WARMUP_REBUILDS = 20000;
+    private static final int REBUILDS = 10000;
+    private static final int ROUNDS = 5;
+
+    private int maxPaths;
+
+    @Before
+    public void setUp() {
+        //measure generation, not path sharing
+        maxPaths = PolygonPathCache.getMaxSize();
+        PolygonPathCache.setMaxSize(0);
+    }
+
+    @After
+    public void tearDown() {
+        PolygonPathCache.setMaxSize(maxPaths);
+    }
+
+    @Test
+    public void regularRebuildDoesNotAllocate() {
+        assertNoAllocations(new RegularPolygonShape());
+    }
+
+    @Test
+    public void starRebuildDoesNotAllocate() {
+        assertNoAllocations(new StarPolygonShape(0.8f, false));
+    }
+
+    @Test
+    public void concaveStarRebuildDoesNotAllocate() {
+        assertNoAllocations(new StarPolygonShape(0.8f, true));
+    }
+
+    @Test
+    public void paperRebuildDoesNotAllocate() {
+        assertNoAllocations(new PaperPolygonShape(-15, 25));
+    }
+
+    @Test
+    public void roundedRebuildDoesNotAllocate() {
+        PolygonShapeSpec spec = new PolygonShapeSpec(100f, 100f, 180f, 6, 37.5f);
+        spec.setCornerRadius(12f);
+        assertNoAllocations(new RegularPolygonShape(), spec);
+    }
+
+    private static void assertNoAllocations(BasePolygonShape shape) {
+        assertNoAllocations(shape, new PolygonShapeSpec(100f, 100f, 180f, 16, 37.5f));
+    }
+
+    private static void assertNoAllocations(BasePolygonShape shape, PolygonShapeSpec spec) {
+        //grows the internal buffers and gets the code compiled
+        rebuild(shape, spec, WARMUP_REBUILDS);
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        //the counter call itself could allocate, measure it once
+        long calibrationStart = bean.getThreadAllocatedBytes(threadId);
+        long overhead = bean.getThreadAllocatedBytes(threadId) - calibrationStart;
+
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && allocated > 0; round++) {
+            long start = bean.getThreadAllocatedBytes(threadId);
+            rebuild(shape, spec, REBUILDS);
+            allocated = Math.min(allocated, bean.getThreadAllocatedBytes(threadId) - start - overhead);
+        }
+
+        assertEquals(shape.getClass().getSimpleName() + " bytes in " + REBUILDS + " rebuilds", 0, allocated);
+    }
+
+    private static void rebuild(BasePolygonShape shape, PolygonShapeSpec spec, int count) {
+        for (int i = 0; i < count; i++) {
+            //size changes on every call, the path is regenerated
+            spec.setDiameter(i % 2 == 0 ? 180f : 181f);
+            shape.getPolygonPath(spec);
+        }
+    }
+}
@@ -5,55 +5,242 @@ import android.graphics.Path;
 /**
  * Base abstract class for implementation shape interface
  */
-public abstract class BasePolygonShape implements PolygonShape {
+public abstract class BasePolygonShape implements PolygonOutlineShape {
+
+    //outline of each worker thread for stateless evaluations
+    private static final ThreadLocal<PolygonOutline> sOutlines = new ThreadLocal<PolygonOutline>() {
+        @Override
+        protected PolygonOutline initialValue() {
+            return new PolygonOutline();
+        }
+    };
+
+    //geometry key of each thread for stateless evaluations
+    private static final ThreadLocal<PolygonGeometryKey> sKeys = new ThreadLocal<PolygonGeometryKey>() {
+        @Override
+        protected PolygonGeometryKey initialValue() {
+            return new PolygonGeometryKey();
+        }
+    };
 
     private Path mPath;
     private PolygonShapeSpec polygonShapeSpec;
 
+    //lookup key of the stateful calls
+    private final PolygonGeometryKey key = new PolygonGeometryKey();
+
+    //last returned path, own or shared, and its key
+    private Path resultPath;
+    private final PolygonGeometryKey resultKey = new PolygonGeometryKey();
+
+    //outline of the last own build, the own path is built from it
+    private final PolygonOutline outline = new PolygonOutline();
+    private final PolygonGeometryKey outlineKey = new PolygonGeometryKey();
+    private boolean hasOutline;
+    private boolean bakedCorners = true;
+
+    //the effect only implements the legacy addEffect, it needs the shape state
+    private volatile boolean legacyEffect;
+
     public BasePolygonShape() {
         this.mPath = new Path();
     }
 
     /**
-     * Return a valid closed path
+     * Return a valid closed path. Paths of cacheable shapes are only regenerated if the geometry
+     * has changed, and shared with other shapes of the same geometry.
      *
      * @param spec shape specs
      * @return a Path
      */
     @Override
-    public Path getPolygonPath(PolygonShapeSpec spec) {
-        float pointX, pointY, rotatedPointX, rotatedPointY, currentPointX = 0f, currentPointY = 0f;
-        double angleRadians = Math.toRadians(spec.getRotation());
+    public synchronized Path getPolygonPath(PolygonShapeSpec spec) {
         polygonShapeSpec = spec;
+        if (!key.set(this, spec, true)) {
+            buildPath(spec, null);
+            return mPath;
+        }
+
+        if (resultPath != null && key.equals(resultKey))
+            return resultPath;
+
+        Path path = PolygonPathCache.get(key);
+        if (path == null) {
+            buildPath(spec, key);
+            path = PolygonPathCache.put(key, mPath);
+            if (path == null)
+                path = mPath;
+        }
+
+        resultPath = path;
+        resultKey.set(key);
+        return path;
+    }
 
+    /**
+     * Stateless evaluation, the shape state is not used. Safe to call from several threads at
+     * once as long as the spec is not modified, i.e. a {@link PolygonShapeSpec#snapshot()}.
+     * Effects only implementing the legacy addEffect are evaluated on the shape state, one at a time.
+     *
+     * @param spec shape specs
+     * @param out  path to fill, null to create a new one
+     * @return the filled path
+     */
+    @Override
+    public Path getPolygonPath(PolygonShapeSpec spec, Path out) {
+        if (out == null)
+            out = new Path();
+
+        PolygonGeometryKey threadKey = sKeys.get();
+        boolean cacheable = threadKey.set(this, spec, true);
+        Path cached = cacheable ? PolygonPathCache.get(threadKey) : null;
+        if (cached != null) {
+            out.set(cached);
+            return out;
+        }
+
+        if (!legacyEffect) {
+            PolygonOutline threadOutline = sOutlines.get();
+            evaluate(spec, threadOutline, null);
+            if (!legacyEffect) {
+                out.rewind();
+                threadOutline.addTo(out);
+                if (cacheable)
+                    PolygonPathCache.put(threadKey, out);
+                return out;
+            }
+        }
+
+        synchronized (this) {
+            out.set(getPolygonPath(spec));
+        }
+        return out;
+    }
+
+    /**
+     * Fills the outline of a spec, generated with the same vertices as the path. Effects drawing
+     * straight into {@link #getPath()} have no outline, 0 is returned.
+     *
+     * @param spec   shape specs
+     * @param points receives x and y pairs, or null
+     * @param types  receives segment types, or null
+     * @return number of segments
+     */
+    @Override
+    public synchronized int getPolygonOutline(PolygonShapeSpec spec, float[] points, byte[] types) {
+        boolean cacheable = key.set(this, spec, true);
+        if (!cacheable || !hasOutline || !key.equals(outlineKey)) {
+            polygonShapeSpec = spec;
+            buildPath(spec, cacheable ? key : null);
+            //the own path has been overwritten
+            if (resultPath == mPath && (!cacheable || !key.equals(resultKey)))
+                resultPath = null;
+        }
+        return outline.copyTo(points, types);
+    }
+
+    /**
+     * Generates the outline and, from it, the path into the shape own path.
+     *
+     * @param spec shape specs
+     * @param key  geometry key, null if the shape is not cacheable
+     */
+    private void buildPath(PolygonShapeSpec spec, PolygonGeometryKey key) {
         mPath.reset();
+        evaluate(spec, outline, mPath);
+        hasOutline = key != null;
+        if (key != null)
+            outlineKey.set(key);
+        if (spec.getNumVertex() < 1)
+            return;
+
+        //Effects drawing straight into getPath() can not be rounded here
+        bakedCorners = outline.getSegmentCount() > 0;
+        if (bakedCorners) {
+            mPath.rewind();
+            outline.addTo(mPath);
+        } else {
+            mPath.close();
+        }
+    }
+
+    /**
+     * Runs the effect over every vertex and closes the outline.
+     *
+     * @param spec       shape specs
+     * @param outline    outline to fill
+     * @param legacyPath path of effects drawing into {@link #getPath()}, null in stateless evaluations
+     */
+    private void evaluate(PolygonShapeSpec spec, PolygonOutline outline, Path legacyPath) {
+        float pointX, pointY, currentPointX = 0f, currentPointY = 0f;
+
+        outline.clear();
+        if (spec.getNumVertex() < 1)
+            return;
+
+        UnitVertexTable table = outline.getVertexTable(spec.getNumVertex());
+        outline.updateRotation(spec.getRotation());
+        float cosRotation = outline.getCosRotation();
+        float sinRotation = outline.getSinRotation();
+        float radius = spec.getDiameter() / 2f;
+        float centerX = spec.getCenterX();
+        float centerY = spec.getCenterY();
+
         int i = 0;
         do {
-            //next vertex point
-            pointX = spec.getCenterX() + spec.getDiameter() / 2f *
-                    (float) Math.cos(2 * Math.PI * i / spec.getNumVertex());
-            pointY = spec.getCenterY() + spec.getDiameter() / 2f *
-                    (float) Math.sin(2 * Math.PI * i / spec.getNumVertex());
-            //rotate vertex
-            rotatedPointX = (float) (Math.cos(angleRadians) * (pointX - spec.getCenterX()) -
-                    Math.sin(angleRadians) * (pointY - spec.getCenterY()) + spec.getCenterX());
-            rotatedPointY = (float) (Math.sin(angleRadians) * (pointX - spec.getCenterX()) +
-                    Math.cos(angleRadians) * (pointY - spec.getCenterY()) + spec.getCenterY());
+            //next vertex point, rotated around the center
+            pointX = centerX + radius * (cosRotation * table.cos(i) - sinRotation * table.sin(i));
+            pointY = centerY + radius * (sinRotation * table.cos(i) + cosRotation * table.sin(i));
 
             if (i == 0) { //move to first vertex
-                mPath.moveTo(rotatedPointX, rotatedPointY);
+                outline.start(pointX, pointY);
+                if (legacyPath != null)
+                    legacyPath.moveTo(pointX, pointY);
             } else {
                 //how to draw to next point
-                addEffect(currentPointX, currentPointY, rotatedPointX, rotatedPointY);
+                addEffect(spec, outline, currentPointX, currentPointY, pointX, pointY);
             }
 
-            currentPointX = rotatedPointX;
-            currentPointY = rotatedPointY;
+            currentPointX = pointX;
+            currentPointY = pointY;
             i++;
         } while (i <= spec.getNumVertex());
-        mPath.close();
 
-        return mPath;
+        if (outline.getSegmentCount() > 0)
+            outline.close(spec.getCornerRadius());
+    }
+
+    /**
+     * Outline of the shape state, the one filled by the legacy
+     * {@link #addEffect(float, float, float, float)}.
+     *
+     * @return own outline
+     */
+    protected final PolygonOutline getStateOutline() {
+        return outline;
+    }
+
+    /**
+     * Adds a line to the outline, to be used by the legacy {@link #addEffect(float, float, float, float)}.
+     *
+     * @param x end point x
+     * @param y end point y
+     */
+    protected void lineTo(float x, float y) {
+        outline.lineTo(x, y);
+    }
+
+    /**
+     * Adds a quadratic curve to the outline, to be used by the legacy
+     * {@link #addEffect(float, float, float, float)}.
+     *
+     * @param controlX control point x
+     * @param controlY control point y
+     * @param x        end point x
+     * @param y        end point y
+     */
+    protected void quadTo(float controlX, float controlY, float x, float y) {
+        outline.quadTo(controlX, controlY, x, y);
     }
 
     public Path getPath() {
@@ -65,12 +252,68 @@ public abstract class BasePolygonShape implements PolygonShape {
     }
 
     /**
-     * Indicates how to draw to next point
+     * Indicates if the spec corner radius is part of the last built path. Effects drawing
+     * straight into {@link #getPath()} need a CornerPathEffect instead.
+     *
+     * @return boolean
+     */
+    public boolean hasBakedCorners() {
+        return bakedCorners;
+    }
+
+    /**
+     * Opt-in to share paths and shadows by geometry. Only shapes whose path depends on nothing
+     * but the spec and the parameters of {@link #addShapeParameters} can be cached, paths of
+     * other shapes are regenerated on each call.
+     *
+     * @return true if the paths can be memoized and shared, false by default
+     */
+    public boolean isCacheable() {
+        return false;
+    }
+
+    /**
+     * Adds every parameter changing the path to a geometry key, needed by cacheable shapes
+     * with parameters.
+     *
+     * @param key geometry key
+     */
+    protected void addShapeParameters(PolygonGeometryKey key) {
+    }
+
+    /**
+     * Indicates how to draw to next point. Effects using only the given spec and outline can be
+     * evaluated from several threads at once, see {@link #getPolygonPath(PolygonShapeSpec, Path)}.
+     * By default the legacy {@link #addEffect(float, float, float, float)} is called on the shape state.
+     *
+     * @param spec     shape specs
+     * @param outline  outline to draw into, with lineTo and quadTo so the corners can be rounded
+     * @param currentX current point x
+     * @param currentY current point y
+     * @param nextX    next point x
+     * @param nextY    next point y
+     */
+    protected void addEffect(PolygonShapeSpec spec, PolygonOutline outline, float currentX, float currentY,
+                             float nextX, float nextY) {
+        if (outline != this.outline) {
+            //legacy effects need the shape state, the caller falls back to it
+            legacyEffect = true;
+            return;
+        }
+        addEffect(currentX, currentY, nextX, nextY);
+    }
+
+    /**
+     * Indicates how to draw to next point, through {@link #getPolygonShapeSpec()}, {@link #lineTo}
+     * and {@link #quadTo}, or straight into {@link #getPath()}. Evaluated on the shape state, one
+     * path at a time. Shapes overriding
+     * {@link #addEffect(PolygonShapeSpec, PolygonOutline, float, float, float, float)} implement
+     * it by calling that one with the shape spec and {@link #getStateOutline()}.
      *
      * @param currentX current point x
      * @param currentY current point y
-     * @param nextX next point x
-     * @param nextY next point y
+     * @param nextX    next point x
+     * @param nextY    next point y
      */
     abstract protected void addEffect(float currentX, float currentY, float nextX, float nextY);
 
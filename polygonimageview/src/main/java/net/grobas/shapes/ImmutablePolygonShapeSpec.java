@@ -0,0 +1,95 @@
+package net.grobas.shapes;
+
+/**
+ * Snapshot of a spec, every setter throws.
+ */
+final class ImmutablePolygonShapeSpec extends PolygonShapeSpec {
+
+    ImmutablePolygonShapeSpec(PolygonShapeSpec source) {
+        super(source);
+    }
+
+    @Override
+    public PolygonShapeSpec snapshot() {
+        return this;
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    @Override
+    public void setBorderColor(int borderColor) {
+        throw immutable();
+    }
+
+    @Override
+    public void setBorderWidth(float borderWidth) {
+        throw immutable();
+    }
+
+    @Override
+    public void setCenterX(float centerX) {
+        throw immutable();
+    }
+
+    @Override
+    public void setCenterY(float centerY) {
+        throw immutable();
+    }
+
+    @Override
+    public void setCornerRadius(float cornerRadius) {
+        throw immutable();
+    }
+
+    @Override
+    public void setDiameter(float diameter) {
+        throw immutable();
+    }
+
+    @Override
+    public void setHasShadow(boolean hasShadow) {
+        throw immutable();
+    }
+
+    @Override
+    public void setHasBorder(boolean hasBorder) {
+        throw immutable();
+    }
+
+    @Override
+    public void setShadowXOffset(float shadowXOffset) {
+        throw immutable();
+    }
+
+    @Override
+    public void setShadowYOffset(float shadowYOffset) {
+        throw immutable();
+    }
+
+    @Override
+    public void setShadowRadius(float shadowRadius) {
+        throw immutable();
+    }
+
+    @Override
+    public void setShadowColor(int shadowColor) {
+        throw immutable();
+    }
+
+    @Override
+    public void setNumVertex(int numVertex) {
+        throw immutable();
+    }
+
+    @Override
+    public void setRotation(float rotation) {
+        throw immutable();
+    }
+
+    private static UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException("Immutable spec snapshot");
+    }
+}
@@ -14,9 +14,27 @@ public class PaperPolygonShape extends BasePolygonShape {
     }
 
     @Override
-    protected void addEffect(float currentX, float currentY, float nextX, float nextY) {
+    protected void addEffect(PolygonShapeSpec spec, PolygonOutline outline, float currentX, float currentY,
+                             float nextX, float nextY) {
         //could be better...
-        getPath().quadTo(nextX + brushOffsetX, nextY + brushOffsetY, nextX, nextY);
+        outline.quadTo(nextX + brushOffsetX, nextY + brushOffsetY, nextX, nextY);
+    }
+
+    @Override
+    protected void addEffect(float currentX, float currentY, float nextX, float nextY) {
+        addEffect(getPolygonShapeSpec(), getStateOutline(), currentX, currentY, nextX, nextY);
+    }
+
+    @Override
+    public boolean isCacheable() {
+        //subclasses could have more parameters, they opt in by themselves
+        return getClass() == PaperPolygonShape.class;
+    }
+
+    @Override
+    protected void addShapeParameters(PolygonGeometryKey key) {
+        key.addParameter(brushOffsetX);
+        key.addParameter(brushOffsetY);
     }
 
     public int getBrushOffsetX() {
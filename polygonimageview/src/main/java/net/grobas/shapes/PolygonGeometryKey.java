@@ -0,0 +1,133 @@
+package net.grobas.shapes;
+
+/**
+ * Value key of a shape outline: shape type and parameters plus the spec geometry, compared
+ * field by field. Identifies the paths and shadows shared between views. Lookup keys are
+ * reused, stored keys are copies.
+ */
+public final class PolygonGeometryKey {
+
+    //null for outlines drawn without the shape
+    private Class<?> shapeType;
+    //shape parameters, plus any extra value of the caller, as raw bits
+    private long[] parameters = new long[4];
+    private int parameterCount;
+    private int numVertex;
+    private float rotation;
+    private float diameter;
+    private float centerX, centerY;
+    private float cornerRadius;
+
+    public PolygonGeometryKey() {
+    }
+
+    /**
+     * @param key key to copy
+     */
+    public PolygonGeometryKey(PolygonGeometryKey key) {
+        set(key);
+    }
+
+    /**
+     * Fills the key of a shape and spec.
+     *
+     * @param shape      outline shape, null for outlines drawn without it, i.e. circles and squares
+     * @param spec       shape specs
+     * @param positioned false to leave the center out, i.e. for shadows drawn anywhere
+     * @return false if the shape is not {@link BasePolygonShape#isCacheable() cacheable}
+     */
+    public boolean set(PolygonShape shape, PolygonShapeSpec spec, boolean positioned) {
+        shapeType = shape != null ? shape.getClass() : null;
+        parameterCount = 0;
+        numVertex = spec.getNumVertex();
+        rotation = spec.getRotation();
+        diameter = spec.getDiameter();
+        centerX = positioned ? spec.getCenterX() : 0f;
+        centerY = positioned ? spec.getCenterY() : 0f;
+        cornerRadius = spec.getCornerRadius();
+        if (shape == null)
+            return true;
+        if (!(shape instanceof BasePolygonShape) || !((BasePolygonShape) shape).isCacheable())
+            return false;
+
+        ((BasePolygonShape) shape).addShapeParameters(this);
+        return true;
+    }
+
+    /**
+     * @param key key to copy
+     */
+    public void set(PolygonGeometryKey key) {
+        shapeType = key.shapeType;
+        if (parameters.length < key.parameterCount)
+            parameters = new long[key.parameters.length];
+        System.arraycopy(key.parameters, 0, parameters, 0, key.parameterCount);
+        parameterCount = key.parameterCount;
+        numVertex = key.numVertex;
+        rotation = key.rotation;
+        diameter = key.diameter;
+        centerX = key.centerX;
+        centerY = key.centerY;
+        cornerRadius = key.cornerRadius;
+    }
+
+    /**
+     * Adds a shape parameter.
+     *
+     * @param value parameter value
+     */
+    public void addParameter(long value) {
+        if (parameterCount == parameters.length) {
+            long[] grown = new long[parameterCount * 2];
+            System.arraycopy(parameters, 0, grown, 0, parameterCount);
+            parameters = grown;
+        }
+        parameters[parameterCount++] = value;
+    }
+
+    /**
+     * Adds a shape parameter.
+     *
+     * @param value parameter value
+     */
+    public void addParameter(float value) {
+        addParameter(Float.floatToIntBits(value));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PolygonGeometryKey))
+            return false;
+
+        PolygonGeometryKey key = (PolygonGeometryKey) o;
+        if (shapeType != key.shapeType || numVertex != key.numVertex || parameterCount != key.parameterCount ||
+                Float.floatToIntBits(rotation) != Float.floatToIntBits(key.rotation) ||
+                Float.floatToIntBits(diameter) != Float.floatToIntBits(key.diameter) ||
+                Float.floatToIntBits(centerX) != Float.floatToIntBits(key.centerX) ||
+                Float.floatToIntBits(centerY) != Float.floatToIntBits(key.centerY) ||
+                Float.floatToIntBits(cornerRadius) != Float.floatToIntBits(key.cornerRadius))
+            return false;
+
+        for (int i = 0; i < parameterCount; i++) {
+            if (parameters[i] != key.parameters[i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = shapeType != null ? shapeType.hashCode() : 0;
+        hash = 31 * hash + numVertex;
+        hash = 31 * hash + Float.floatToIntBits(rotation);
+        hash = 31 * hash + Float.floatToIntBits(diameter);
+        hash = 31 * hash + Float.floatToIntBits(centerX);
+        hash = 31 * hash + Float.floatToIntBits(centerY);
+        hash = 31 * hash + Float.floatToIntBits(cornerRadius);
+        for (int i = 0; i < parameterCount; i++)
+            hash = 31 * hash + (int) (parameters[i] ^ (parameters[i] >>> 32));
+        return hash;
+    }
+}
@@ -0,0 +1,268 @@
+package net.grobas.shapes;
+
+import android.graphics.Path;
+
+/**
+ * Outline under construction, filled by the shape effects. Each evaluation owns its outline,
+ * so shapes can be evaluated from several threads at once.
+ */
+public final class PolygonOutline {
+
+    //effect segments, 4 floats each: control point and end point
+    private float[] segments = new float[64];
+    private boolean[] quads = new boolean[16];
+    private int segmentCount;
+    private float startX, startY;
+
+    //final outline, fillets included
+    private float[] points = new float[16 * PolygonOutlineShape.POINTS_STRIDE];
+    private byte[] types = new byte[16];
+    private int count;
+
+    //last computed fillet, tangent points and cubic handles
+    private float filletStartX, filletStartY, filletEndX, filletEndY;
+    private float handleStartX, handleStartY, handleEndX, handleEndY;
+
+    //last vertex table and rotation, trig calls only when they change
+    private UnitVertexTable vertexTable;
+    private float rotation;
+    private float cosRotation = 1f;
+    private float sinRotation = 0f;
+
+    PolygonOutline() {
+    }
+
+    /**
+     * Adds a line to the outline.
+     *
+     * @param x end point x
+     * @param y end point y
+     */
+    public void lineTo(float x, float y) {
+        addSegment(false, 0f, 0f, x, y);
+    }
+
+    /**
+     * Adds a quadratic curve to the outline.
+     *
+     * @param controlX control point x
+     * @param controlY control point y
+     * @param x        end point x
+     * @param y        end point y
+     */
+    public void quadTo(float controlX, float controlY, float x, float y) {
+        addSegment(true, controlX, controlY, x, y);
+    }
+
+    void start(float x, float y) {
+        segmentCount = 0;
+        count = 0;
+        startX = x;
+        startY = y;
+    }
+
+    void clear() {
+        segmentCount = 0;
+        count = 0;
+    }
+
+    int getSegmentCount() {
+        return segmentCount;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    UnitVertexTable getVertexTable(int numVertex) {
+        if (vertexTable == null || vertexTable.getNumVertex() != numVertex)
+            vertexTable = UnitVertexTable.get(numVertex);
+        return vertexTable;
+    }
+
+    void updateRotation(float degrees) {
+        if (degrees == rotation)
+            return;
+
+        double angleRadians = Math.toRadians(degrees);
+        rotation = degrees;
+        cosRotation = (float) Math.cos(angleRadians);
+        sinRotation = (float) Math.sin(angleRadians);
+    }
+
+    float getCosRotation() {
+        return cosRotation;
+    }
+
+    float getSinRotation() {
+        return sinRotation;
+    }
+
+    private void addSegment(boolean quad, float controlX, float controlY, float x, float y) {
+        if (segmentCount == quads.length) {
+            boolean[] grownQuads = new boolean[segmentCount * 2];
+            System.arraycopy(quads, 0, grownQuads, 0, segmentCount);
+            quads = grownQuads;
+            float[] grownSegments = new float[segmentCount * 8];
+            System.arraycopy(segments, 0, grownSegments, 0, segmentCount * 4);
+            segments = grownSegments;
+        }
+        int offset = segmentCount * 4;
+        segments[offset] = controlX;
+        segments[offset + 1] = controlY;
+        segments[offset + 2] = x;
+        segments[offset + 3] = y;
+        quads[segmentCount++] = quad;
+    }
+
+    /**
+     * Generates the closed outline from the effect segments, with a circular fillet on each
+     * corner between two lines. Like CornerPathEffect, the fillet starts at the corner radius
+     * from the corner, curves are not rounded and a fillet takes at most half of each line.
+     *
+     * @param cornerRadius distance of the fillet ends from the corner, 0 for sharp corners
+     */
+    void close(float cornerRadius) {
+        count = 0;
+        boolean rounded = cornerRadius > 0f && segmentCount > 1;
+        //the last corner is the first point, the outline starts after its fillet
+        if (rounded && computeFillet(segmentCount - 1, cornerRadius))
+            add(PolygonOutlineShape.SEGMENT_MOVE, filletEndX, filletEndY, 0f, 0f, 0f, 0f);
+        else
+            add(PolygonOutlineShape.SEGMENT_MOVE, startX, startY, 0f, 0f, 0f, 0f);
+
+        for (int i = 0; i < segmentCount; i++) {
+            int offset = i * 4;
+            boolean filleted = rounded && computeFillet(i, cornerRadius);
+            if (quads[i]) {
+                add(PolygonOutlineShape.SEGMENT_QUAD, segments[offset], segments[offset + 1],
+                        segments[offset + 2], segments[offset + 3], 0f, 0f);
+            } else if (filleted) {
+                add(PolygonOutlineShape.SEGMENT_LINE, filletStartX, filletStartY, 0f, 0f, 0f, 0f);
+            } else {
+                add(PolygonOutlineShape.SEGMENT_LINE, segments[offset + 2], segments[offset + 3], 0f, 0f, 0f, 0f);
+            }
+
+            if (filleted)
+                add(PolygonOutlineShape.SEGMENT_CUBIC, handleStartX, handleStartY, handleEndX, handleEndY,
+                        filletEndX, filletEndY);
+        }
+    }
+
+    /**
+     * Computes the fillet of the corner at the end of a segment, between it and the next one.
+     *
+     * @param index  segment index
+     * @param radius distance of the fillet ends from the corner
+     * @return false if the corner can not be rounded
+     */
+    private boolean computeFillet(int index, float radius) {
+        int next = (index + 1) % segmentCount;
+        if (quads[index] || quads[next])
+            return false;
+
+        int offset = index * 4;
+        float cornerX = segments[offset + 2];
+        float cornerY = segments[offset + 3];
+        float fromX = index == 0 ? startX : segments[offset - 2];
+        float fromY = index == 0 ? startY : segments[offset - 1];
+        float toX = segments[next * 4 + 2];
+        float toY = segments[next * 4 + 3];
+
+        float inX = cornerX - fromX, inY = cornerY - fromY;
+        float outX = toX - cornerX, outY = toY - cornerY;
+        float inLength = (float) Math.sqrt(inX * inX + inY * inY);
+        float outLength = (float) Math.sqrt(outX * outX + outY * outY);
+        if (inLength == 0f || outLength == 0f)
+            return false;
+        inX /= inLength;
+        inY /= inLength;
+        outX /= outLength;
+        outY /= outLength;
+
+        //turn angle between both directions, straight joints have nothing to round
+        float sin = inX * outY - inY * outX;
+        if (Math.abs(sin) < 1e-4f)
+            return false;
+        double turn = Math.atan2(Math.abs(sin), inX * outX + inY * outY);
+        //tangent distance from the corner, as CornerPathEffect, clamped to half of each line
+        float halfTurn = (float) Math.tan(turn / 2);
+        float tangent = Math.min(radius, Math.min(inLength, outLength) / 2);
+        //cubic approximation of a circular arc, its radius is tangent / halfTurn
+        float handle = (float) (4.0 / 3.0 * Math.tan(turn / 4)) * tangent / halfTurn;
+
+        filletStartX = cornerX - inX * tangent;
+        filletStartY = cornerY - inY * tangent;
+        filletEndX = cornerX + outX * tangent;
+        filletEndY = cornerY + outY * tangent;
+        handleStartX = filletStartX + inX * handle;
+        handleStartY = filletStartY + inY * handle;
+        handleEndX = filletEndX - outX * handle;
+        handleEndY = filletEndY - outY * handle;
+        return true;
+    }
+
+    private void add(byte type, float x1, float y1, float x2, float y2, float x3, float y3) {
+        int stride = PolygonOutlineShape.POINTS_STRIDE;
+        if (count == types.length) {
+            byte[] grownTypes = new byte[count * 2];
+            System.arraycopy(types, 0, grownTypes, 0, count);
+            types = grownTypes;
+            float[] grownPoints = new float[count * 2 * stride];
+            System.arraycopy(points, 0, grownPoints, 0, count * stride);
+            points = grownPoints;
+        }
+        int offset = count * stride;
+        points[offset] = x1;
+        points[offset + 1] = y1;
+        points[offset + 2] = x2;
+        points[offset + 3] = y2;
+        points[offset + 4] = x3;
+        points[offset + 5] = y3;
+        types[count++] = type;
+    }
+
+    /**
+     * Adds the outline to a path and closes it.
+     *
+     * @param path destination path
+     */
+    void addTo(Path path) {
+        int stride = PolygonOutlineShape.POINTS_STRIDE;
+        float[] p = points;
+        for (int i = 0; i < count; i++) {
+            int offset = i * stride;
+            switch (types[i]) {
+                case PolygonOutlineShape.SEGMENT_MOVE:
+                    path.moveTo(p[offset], p[offset + 1]);
+                    break;
+                case PolygonOutlineShape.SEGMENT_LINE:
+                    path.lineTo(p[offset], p[offset + 1]);
+                    break;
+                case PolygonOutlineShape.SEGMENT_QUAD:
+                    path.quadTo(p[offset], p[offset + 1], p[offset + 2], p[offset + 3]);
+                    break;
+                default:
+                    path.cubicTo(p[offset], p[offset + 1], p[offset + 2], p[offset + 3], p[offset + 4], p[offset + 5]);
+            }
+        }
+        path.close();
+    }
+
+    /**
+     * Copies the outline if the arrays are big enough.
+     *
+     * @param outPoints receives x and y pairs, or null
+     * @param outTypes  receives segment types, or null
+     * @return number of segments
+     */
+    int copyTo(float[] outPoints, byte[] outTypes) {
+        int stride = PolygonOutlineShape.POINTS_STRIDE;
+        if (outPoints == null || outTypes == null || outPoints.length < count * stride || outTypes.length < count)
+            return count;
+
+        System.arraycopy(points, 0, outPoints, 0, count * stride);
+        System.arraycopy(types, 0, outTypes, 0, count);
+        return count;
+    }
+}
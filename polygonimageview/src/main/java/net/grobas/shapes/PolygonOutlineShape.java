@@ -0,0 +1,42 @@
+package net.grobas.shapes;
+
+import android.graphics.Path;
+
+/**
+ * Shape that can also export its outline as primitive arrays, i.e. for hit testing,
+ * GL rendering or SVG export. The outline is the same geometry as the path.
+ */
+public interface PolygonOutlineShape extends PolygonShape {
+
+    //segment types
+    byte SEGMENT_MOVE = 0;
+    byte SEGMENT_LINE = 1;
+    byte SEGMENT_QUAD = 2;
+    byte SEGMENT_CUBIC = 3;
+
+    //floats per segment in the points array
+    int POINTS_STRIDE = 6;
+
+    /**
+     * Fills the closed outline of a spec. Segment i has the type types[i] and its points start
+     * at points[i * POINTS_STRIDE]: the end point for moves and lines, control and end points
+     * for quads, two controls and end point for cubics. The first segment is a move.
+     * Nothing is written if the arrays are too small, use the returned count to size them.
+     *
+     * @param polygonShapeSpec polygonal specs
+     * @param points           receives x and y pairs, at least count * POINTS_STRIDE floats, or null
+     * @param types            receives segment types, at least count bytes, or null
+     * @return number of segments
+     */
+    int getPolygonOutline(PolygonShapeSpec polygonShapeSpec, float[] points, byte[] types);
+
+    /**
+     * Thread-safe evaluation into a caller path, i.e. to render thumbnails on worker threads
+     * while the UI thread uses the same shape.
+     *
+     * @param polygonShapeSpec polygonal specs, not modified while evaluating, i.e. a snapshot
+     * @param out              path to fill, null to create a new one
+     * @return the filled path
+     */
+    Path getPolygonPath(PolygonShapeSpec polygonShapeSpec, Path out);
+}
@@ -0,0 +1,81 @@
+package net.grobas.shapes;
+
+import android.graphics.Path;
+
+import net.grobas.view.util.BoundedLruCache;
+
+/**
+ * Process-wide cache of immutable shape paths keyed by shape and geometry, compared by value.
+ * Lets identical shapes, i.e. the avatars of a grid, share one path.
+ */
+public final class PolygonPathCache {
+
+    private static final int DEFAULT_MAX_PATHS = 32;
+
+    private static final BoundedLruCache<PolygonGeometryKey, Path> sCache = new BoundedLruCache<PolygonGeometryKey, Path>(DEFAULT_MAX_PATHS);
+
+    private PolygonPathCache() {
+    }
+
+    /**
+     * @param key shape and geometry key
+     * @return shared path or null
+     */
+    static Path get(PolygonGeometryKey key) {
+        if (sCache.maxSize() == 0)
+            return null;
+        return sCache.get(key);
+    }
+
+    /**
+     * Caches a copy of a path under a copy of its key.
+     *
+     * @param key  shape and geometry key, reused by the caller
+     * @param path path to copy
+     * @return the shared copy, or null if the cache is disabled
+     */
+    static Path put(PolygonGeometryKey key, Path path) {
+        if (sCache.maxSize() == 0)
+            return null;
+
+        Path shared = new Path(path);
+        sCache.put(new PolygonGeometryKey(key), shared);
+        return shared;
+    }
+
+    /**
+     * Changes the number of cached paths, 0 disables the cache.
+     *
+     * @param maxPaths max number of paths
+     */
+    public static void setMaxSize(int maxPaths) {
+        sCache.resize(maxPaths);
+    }
+
+    public static int getMaxSize() {
+        return sCache.maxSize();
+    }
+
+    /**
+     * @return number of cached paths
+     */
+    public static int getSize() {
+        return sCache.size();
+    }
+
+    public static int getHitCount() {
+        return sCache.hitCount();
+    }
+
+    public static int getMissCount() {
+        return sCache.missCount();
+    }
+
+    public static int getEvictionCount() {
+        return sCache.evictionCount();
+    }
+
+    public static void clear() {
+        sCache.evictAll();
+    }
+}
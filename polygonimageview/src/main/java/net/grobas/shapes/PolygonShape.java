@@ -8,7 +8,7 @@ import android.graphics.Path;
 public interface PolygonShape {
 
     /**
-     * Return a closed valid Path
+     * Return a closed valid Path. The path could be shared with other views, do not modify it.
      *
      * @param polygonShapeSpec polygonal specs
      * @return a Path
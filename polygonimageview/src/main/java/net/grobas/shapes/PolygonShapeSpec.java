@@ -43,6 +43,46 @@ public class PolygonShapeSpec {
         defaultShadow();
     }
 
+    /**
+     * Copies every spec value.
+     *
+     * @param source spec to copy
+     */
+    public PolygonShapeSpec(PolygonShapeSpec source) {
+        rotation = source.rotation;
+        numVertex = source.numVertex;
+        hasBorder = source.hasBorder;
+        cornerRadius = source.cornerRadius;
+        borderColor = source.borderColor;
+        borderWidth = source.borderWidth;
+        hasShadow = source.hasShadow;
+        shadowRadius = source.shadowRadius;
+        shadowXOffset = source.shadowXOffset;
+        shadowYOffset = source.shadowYOffset;
+        shadowColor = source.shadowColor;
+        diameter = source.diameter;
+        centerX = source.centerX;
+        centerY = source.centerY;
+    }
+
+    /**
+     * Immutable copy of the current values, safe to share with other threads.
+     *
+     * @return immutable spec, setters throw UnsupportedOperationException
+     */
+    public PolygonShapeSpec snapshot() {
+        return new ImmutablePolygonShapeSpec(this);
+    }
+
+    /**
+     * Indicates if the setters are disabled, i.e. a snapshot.
+     *
+     * @return boolean
+     */
+    public boolean isImmutable() {
+        return false;
+    }
+
     public int getBorderColor() {
         return borderColor;
     }
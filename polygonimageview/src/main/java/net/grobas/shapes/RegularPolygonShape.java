@@ -6,8 +6,20 @@ package net.grobas.shapes;
  */
 public class RegularPolygonShape extends BasePolygonShape {
 
+    @Override
+    public boolean isCacheable() {
+        //subclasses could have more parameters, they opt in by themselves
+        return getClass() == RegularPolygonShape.class;
+    }
+
+    @Override
+    protected void addEffect(PolygonShapeSpec spec, PolygonOutline outline, float currentX, float currentY,
+                             float nextX, float nextY) {
+        outline.lineTo(nextX, nextY);
+    }
+
     @Override
     protected void addEffect(float currentX, float currentY, float nextX, float nextY) {
-        getPath().lineTo(nextX, nextY);
+        addEffect(getPolygonShapeSpec(), getStateOutline(), currentX, currentY, nextX, nextY);
     }
 }
@@ -1,9 +1,5 @@
 package net.grobas.shapes;
 
-import net.grobas.view.util.GeometryUtil;
-
-import java.util.List;
-
 /**
  * Create a star shape
  */
@@ -19,25 +15,45 @@ public class StarPolygonShape extends BasePolygonShape {
     }
 
     @Override
-    protected void addEffect(float currentX, float currentY, float nextX, float nextY) {
-        float cX = getPolygonShapeSpec().getCenterX();
-        float cY = getPolygonShapeSpec().getCenterY();
-        float radius = (getPolygonShapeSpec().getDiameter() / 2f) * radiusScale;
-
-        float pX = (currentX + nextX) / 2f;
-        float pY = (currentY + nextY) / 2f;
+    protected void addEffect(PolygonShapeSpec spec, PolygonOutline outline, float currentX, float currentY,
+                             float nextX, float nextY) {
+        float cX = spec.getCenterX();
+        float cY = spec.getCenterY();
+        float radius = (spec.getDiameter() / 2f) * radiusScale;
 
-        List<GeometryUtil.Point> p = GeometryUtil.getCircleLineIntersectionPoint(new GeometryUtil.Point(pX, pY),
-                new GeometryUtil.Point(cX, cY), new GeometryUtil.Point(cX, cY), radius);
+        //inner vertex, the edge midpoint direction scaled to the inner radius
+        float dX = (currentX + nextX) / 2f - cX;
+        float dY = (currentY + nextY) / 2f - cY;
+        float length = (float) Math.sqrt(dX * dX + dY * dY);
+        float scale = length > 0f ? radius / length : 0f;
+        float pX = cX + dX * scale;
+        float pY = cY + dY * scale;
 
         if (isConcave) {
-            getPath().quadTo((float) p.get(0).x, (float) p.get(0).y, nextX, nextY);
+            outline.quadTo(pX, pY, nextX, nextY);
         } else {
-            getPath().lineTo((float) p.get(0).x, (float) p.get(0).y);
-            getPath().lineTo(nextX, nextY);
+            outline.lineTo(pX, pY);
+            outline.lineTo(nextX, nextY);
         }
     }
 
+    @Override
+    protected void addEffect(float currentX, float currentY, float nextX, float nextY) {
+        addEffect(getPolygonShapeSpec(), getStateOutline(), currentX, currentY, nextX, nextY);
+    }
+
+    @Override
+    public boolean isCacheable() {
+        //subclasses could have more parameters, they opt in by themselves
+        return getClass() == StarPolygonShape.class;
+    }
+
+    @Override
+    protected void addShapeParameters(PolygonGeometryKey key) {
+        key.addParameter(radiusScale);
+        key.addParameter(isConcave ? 1 : 0);
+    }
+
     public boolean isConcave() {
         return isConcave;
     }
@@ -0,0 +1,69 @@
+package net.grobas.shapes;
+
+/**
+ * Immutable cos/sin table of the vertices of a regular polygon inscribed in the unit circle.
+ * Tables are interned per vertex number and shared by every shape.
+ */
+final class UnitVertexTable {
+
+    private static UnitVertexTable[] sTables = new UnitVertexTable[16];
+
+    private final int numVertex;
+    private final float[] cos;
+    private final float[] sin;
+
+    private UnitVertexTable(int numVertex) {
+        this.numVertex = numVertex;
+        this.cos = new float[numVertex];
+        this.sin = new float[numVertex];
+        for (int i = 0; i < numVertex; i++) {
+            double angle = 2 * Math.PI * i / numVertex;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+    }
+
+    /**
+     * Returns the shared table for a vertex number.
+     *
+     * @param numVertex vertex number, greater than 0
+     * @return vertex table
+     */
+    static synchronized UnitVertexTable get(int numVertex) {
+        if (numVertex < 1)
+            throw new IllegalArgumentException("numVertex < 1");
+
+        if (numVertex >= sTables.length) {
+            UnitVertexTable[] tables = new UnitVertexTable[Math.max(numVertex + 1, sTables.length * 2)];
+            System.arraycopy(sTables, 0, tables, 0, sTables.length);
+            sTables = tables;
+        }
+
+        UnitVertexTable table = sTables[numVertex];
+        if (table == null) {
+            table = new UnitVertexTable(numVertex);
+            sTables[numVertex] = table;
+        }
+        return table;
+    }
+
+    int getNumVertex() {
+        return numVertex;
+    }
+
+    /**
+     * @param i vertex index, wraps around
+     * @return cosine of the vertex angle
+     */
+    float cos(int i) {
+        return cos[i % numVertex];
+    }
+
+    /**
+     * @param i vertex index, wraps around
+     * @return sine of the vertex angle
+     */
+    float sin(int i) {
+        return sin[i % numVertex];
+    }
+}
@@ -0,0 +1,96 @@
+package net.grobas.view;
+
+import net.grobas.view.util.BoundedLruCache;
+
+/**
+ * Base of the shared bitmap caches, an LRU cache evicted by byte count with its
+ * trimming, sizing and statistics.
+ *
+ * @param <K> key type
+ * @param <V> cached bitmap or entry type
+ */
+public abstract class BitmapMemoryCache<K, V> {
+
+    final BoundedLruCache<K, V> mCache;
+
+    /**
+     * @param maxBytes max cache size in bytes
+     */
+    BitmapMemoryCache(int maxBytes) {
+        mCache = new BoundedLruCache<K, V>(maxBytes) {
+            @Override
+            protected int sizeOf(K key, V value) {
+                return getByteCount(value);
+            }
+        };
+    }
+
+    /**
+     * Default size of a shared cache.
+     *
+     * @param memoryDivider fraction of the heap
+     * @return max size in bytes
+     */
+    static int getDefaultMaxBytes(int memoryDivider) {
+        return (int) (Runtime.getRuntime().maxMemory() / memoryDivider);
+    }
+
+    /**
+     * @param value cached value
+     * @return bytes held by the value
+     */
+    abstract int getByteCount(V value);
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Evicts eldest entries until the cache holds at most the given bytes, the max size is kept.
+     *
+     * @param maxBytes bytes to keep
+     */
+    public void trimToSize(int maxBytes) {
+        mCache.trimToSize(maxBytes);
+    }
+
+    /**
+     * Changes the max cache size.
+     *
+     * @param maxBytes new size in bytes
+     */
+    public void setMaxSize(int maxBytes) {
+        mCache.resize(maxBytes);
+    }
+
+    public int getMaxSize() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * @return bytes currently held
+     */
+    public int getSize() {
+        return mCache.size();
+    }
+
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return mCache.toString();
+    }
+}
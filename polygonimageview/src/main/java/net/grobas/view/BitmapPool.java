@@ -0,0 +1,252 @@
+package net.grobas.view;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Process-wide pool of mutable bitmaps, used for drawable rasterization and thumbnails.
+ * From KitKat bitmaps are grouped by power of two size classes and reused through
+ * {@link Bitmap#reconfigure(int, int, Bitmap.Config)}, before only exact sizes are reused.
+ */
+public class BitmapPool {
+
+    //1/32 of the heap by default
+    private static final int DEFAULT_MEMORY_DIVIDER = 32;
+
+    private static BitmapPool sInstance;
+
+    private final boolean mReconfigure;
+    private final HashMap<Long, LinkedList<Bitmap>> mBuckets = new HashMap<Long, LinkedList<Bitmap>>();
+    //pooled bitmaps and their bucket, eldest first. Bitmap keeps the identity equals and hashCode
+    private final LinkedHashMap<Bitmap, Long> mBitmaps = new LinkedHashMap<Bitmap, Long>();
+
+    private int mSize;
+    private int mMaxSize;
+    private int mHitCount;
+    private int mMissCount;
+    private int mPutCount;
+    private int mEvictionCount;
+
+    /**
+     * Returns the shared pool.
+     *
+     * @return shared instance
+     */
+    public static synchronized BitmapPool getInstance() {
+        if (sInstance == null) {
+            sInstance = new BitmapPool((int) (Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_DIVIDER));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxBytes max bytes held by the pool
+     */
+    public BitmapPool(int maxBytes) {
+        mMaxSize = maxBytes;
+        mReconfigure = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Returns a cleared bitmap, pooled if possible.
+     *
+     * @param width  bitmap width
+     * @param height bitmap height
+     * @param config bitmap config
+     * @return bitmap
+     * @throws OutOfMemoryError if a new bitmap can not be allocated
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = mReconfigure ? getReconfigured(width, height, config) : getExact(width, height, config);
+        if (bitmap != null) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Gives a bitmap back to the pool. It must not be used anymore by the caller, nor be
+     * referenced by a display list still to be drawn.
+     *
+     * @param bitmap bitmap, ignored if immutable or recycled
+     */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled())
+            return;
+
+        synchronized (this) {
+            int bytes = getByteCount(bitmap);
+            if (bytes > mMaxSize || mBitmaps.containsKey(bitmap))
+                return;
+
+            Long key = mReconfigure ? getSizeClass(bytes, false) : getExactKey(bitmap.getWidth(),
+                    bitmap.getHeight(), bitmap.getConfig());
+            LinkedList<Bitmap> bucket = mBuckets.get(key);
+            if (bucket == null) {
+                bucket = new LinkedList<Bitmap>();
+                mBuckets.put(key, bucket);
+            }
+            bucket.add(bitmap);
+            mBitmaps.put(bitmap, key);
+            mSize += bytes;
+            mPutCount++;
+            trimToSize(mMaxSize);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private synchronized Bitmap getReconfigured(int width, int height, Bitmap.Config config) {
+        int bytes = width * height * getBytesPerPixel(config);
+        long sizeClass = getSizeClass(bytes, true);
+        //do not waste more than twice the needed memory
+        for (long key = sizeClass; key <= sizeClass + 1; key++) {
+            Bitmap bitmap = take(key);
+            if (bitmap != null) {
+                bitmap.reconfigure(width, height, config);
+                return bitmap;
+            }
+        }
+        mMissCount++;
+        return null;
+    }
+
+    private synchronized Bitmap getExact(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(getExactKey(width, height, config));
+        if (bitmap == null)
+            mMissCount++;
+        return bitmap;
+    }
+
+    private Bitmap take(long key) {
+        LinkedList<Bitmap> bucket = mBuckets.get(key);
+        if (bucket == null || bucket.isEmpty())
+            return null;
+
+        Bitmap bitmap = bucket.removeLast();
+        mBitmaps.remove(bitmap);
+        mSize -= getByteCount(bitmap);
+        mHitCount++;
+        return bitmap;
+    }
+
+    /**
+     * Releases eldest bitmaps until the pool holds at most the given bytes, the max size is kept.
+     *
+     * @param maxSize bytes to keep
+     */
+    public synchronized void trimToSize(int maxSize) {
+        while (mSize > maxSize && !mBitmaps.isEmpty()) {
+            Iterator<Map.Entry<Bitmap, Long>> iterator = mBitmaps.entrySet().iterator();
+            Map.Entry<Bitmap, Long> eldest = iterator.next();
+            Bitmap bitmap = eldest.getKey();
+            iterator.remove();
+            //the eldest bitmap is also the eldest of its bucket
+            mBuckets.get(eldest.getValue()).removeFirst();
+            mSize -= getByteCount(bitmap);
+            mEvictionCount++;
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Power of two size class.
+     *
+     * @param bytes  byte count
+     * @param ceil   round up for requests, down for pooled bitmaps
+     * @return class
+     */
+    private static long getSizeClass(int bytes, boolean ceil) {
+        int floor = 31 - Integer.numberOfLeadingZeros(Math.max(bytes, 1));
+        return ceil && (1 << floor) < bytes ? floor + 1 : floor;
+    }
+
+    private static long getExactKey(int width, int height, Bitmap.Config config) {
+        return ((long) width << 32) | ((long) height << 4) | (config != null ? config.ordinal() : 0xf);
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8)
+            return 1;
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444)
+            return 2;
+        return 4;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private int getByteCount(Bitmap bitmap) {
+        return mReconfigure ? bitmap.getAllocationByteCount() : bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * Releases every pooled bitmap.
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * Changes the max pool size.
+     *
+     * @param maxBytes new size in bytes
+     */
+    public synchronized void setMaxSize(int maxBytes) {
+        mMaxSize = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return bytes currently held
+     */
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return requests served with a pooled bitmap
+     */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return requests that allocated a new bitmap
+     */
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getPutCount() {
+        return mPutCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * @return hits over requests, 0 without requests
+     */
+    public synchronized float getReuseRate() {
+        int requests = mHitCount + mMissCount;
+        return requests != 0 ? (float) mHitCount / requests : 0f;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BitmapPool[maxSize=%d,size=%d,hits=%d,misses=%d,evictions=%d]",
+                mMaxSize, mSize, mHitCount, mMissCount, mEvictionCount);
+    }
+}
@@ -0,0 +1,56 @@
+package net.grobas.view;
+
+import android.graphics.CornerPathEffect;
+import android.graphics.PathEffect;
+
+import net.grobas.shapes.BasePolygonShape;
+import net.grobas.shapes.PolygonShape;
+import net.grobas.view.util.BoundedLruCache;
+
+/**
+ * Corner path effects shared by every view and renderer with the same radius.
+ * Only needed by outlines without baked corners, i.e. squares and custom shapes.
+ */
+final class CornerEffects {
+
+    private static final int MAX_EFFECTS = 16;
+
+    private static final BoundedLruCache<Float, PathEffect> sEffects =
+            new BoundedLruCache<Float, PathEffect>(MAX_EFFECTS);
+
+    private CornerEffects() {
+    }
+
+    /**
+     * Effect needed by an outline. Circles and plain images have no corners, and
+     * BasePolygonShape bakes them into its paths.
+     *
+     * @param shape     outline shape
+     * @param numVertex outline vertices
+     * @param radius    corner radius
+     * @return shared effect or null
+     */
+    static PathEffect forOutline(PolygonShape shape, int numVertex, float radius) {
+        if (numVertex == 0 || numVertex == 1)
+            return null;
+        if (numVertex >= 3 && shape instanceof BasePolygonShape && ((BasePolygonShape) shape).hasBakedCorners())
+            return null;
+        return get(radius);
+    }
+
+    /**
+     * @param radius corner radius
+     * @return shared effect, null if the radius is 0
+     */
+    static PathEffect get(float radius) {
+        if (radius <= 0f)
+            return null;
+
+        PathEffect effect = sEffects.get(radius);
+        if (effect == null) {
+            effect = new CornerPathEffect(radius);
+            sEffects.put(radius, effect);
+        }
+        return effect;
+    }
+}
@@ -0,0 +1,130 @@
+package net.grobas.view;
+
+import android.graphics.Path;
+import android.graphics.PathMeasure;
+
+import net.grobas.shapes.PolygonOutlineShape;
+import net.grobas.shapes.PolygonShapeSpec;
+import net.grobas.view.util.GeometryUtil;
+
+/**
+ * Polygon approximation of an outline for hit testing, built when the polygon is rebuilt.
+ * Line outlines keep their exact vertices, curves and rounded corners are flattened and
+ * other paths are sampled. The buffers are reused between outlines.
+ */
+final class HitOutline {
+
+    //points of each flattened curve
+    private static final int CURVE_STEPS = 6;
+
+    private PathMeasure mPathMeasure;
+    private final float[] mPos = new float[2];
+    private float[] mPoints = new float[0];
+    private int mCount;
+
+    //exported shape outline
+    private float[] mOutlinePoints = new float[0];
+    private byte[] mOutlineTypes = new byte[0];
+
+    /**
+     * Takes the outline exported by a shape, the same geometry as its path.
+     *
+     * @param shape outline shape
+     * @param spec  shape specs
+     * @return false if the shape exports no outline, i.e. effects drawing straight into the path
+     */
+    boolean set(PolygonOutlineShape shape, PolygonShapeSpec spec) {
+        int segments = shape.getPolygonOutline(spec, mOutlinePoints, mOutlineTypes);
+        if (segments > mOutlineTypes.length) {
+            mOutlinePoints = new float[segments * PolygonOutlineShape.POINTS_STRIDE];
+            mOutlineTypes = new byte[segments];
+            segments = shape.getPolygonOutline(spec, mOutlinePoints, mOutlineTypes);
+        }
+        if (segments == 0)
+            return false;
+
+        mCount = 0;
+        float lastX = 0f, lastY = 0f;
+        for (int i = 0; i < segments; i++) {
+            int offset = i * PolygonOutlineShape.POINTS_STRIDE;
+            float[] p = mOutlinePoints;
+            switch (mOutlineTypes[i]) {
+                case PolygonOutlineShape.SEGMENT_MOVE:
+                case PolygonOutlineShape.SEGMENT_LINE:
+                    lastX = p[offset];
+                    lastY = p[offset + 1];
+                    add(lastX, lastY);
+                    break;
+                case PolygonOutlineShape.SEGMENT_QUAD:
+                    for (int step = 1; step <= CURVE_STEPS; step++) {
+                        float t = (float) step / CURVE_STEPS;
+                        float u = 1 - t;
+                        add(u * u * lastX + 2 * u * t * p[offset] + t * t * p[offset + 2],
+                                u * u * lastY + 2 * u * t * p[offset + 1] + t * t * p[offset + 3]);
+                    }
+                    lastX = p[offset + 2];
+                    lastY = p[offset + 3];
+                    break;
+                default:
+                    for (int step = 1; step <= CURVE_STEPS; step++) {
+                        float t = (float) step / CURVE_STEPS;
+                        float u = 1 - t;
+                        add(u * u * u * lastX + 3 * u * u * t * p[offset] + 3 * u * t * t * p[offset + 2] +
+                                        t * t * t * p[offset + 4],
+                                u * u * u * lastY + 3 * u * u * t * p[offset + 1] + 3 * u * t * t * p[offset + 3] +
+                                        t * t * t * p[offset + 5]);
+                    }
+                    lastX = p[offset + 4];
+                    lastY = p[offset + 5];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Samples a closed path with equally spaced points.
+     *
+     * @param path    closed path
+     * @param samples number of points
+     */
+    void set(Path path, int samples) {
+        if (mPathMeasure == null)
+            mPathMeasure = new PathMeasure();
+        mCount = 0;
+        mPathMeasure.setPath(path, true);
+        float step = mPathMeasure.getLength() / samples;
+        for (int i = 0; i < samples; i++) {
+            mPathMeasure.getPosTan(i * step, mPos, null);
+            add(mPos[0], mPos[1]);
+        }
+    }
+
+    /**
+     * Takes the current outline of a morph.
+     *
+     * @param morph    running morph
+     * @param fraction morph fraction
+     */
+    void set(PolygonMorph morph, float fraction) {
+        int count = morph.getPointCount();
+        if (mPoints.length < count * 2)
+            mPoints = new float[count * 2];
+        morph.getPoints(fraction, mPoints);
+        mCount = count;
+    }
+
+    private void add(float x, float y) {
+        if (mPoints.length < (mCount + 1) * 2) {
+            float[] grown = new float[Math.max(16, mPoints.length * 2)];
+            System.arraycopy(mPoints, 0, grown, 0, mCount * 2);
+            mPoints = grown;
+        }
+        mPoints[mCount * 2] = x;
+        mPoints[mCount * 2 + 1] = y;
+        mCount++;
+    }
+
+    boolean contains(float x, float y) {
+        return GeometryUtil.isInsidePolygon(mPoints, mCount, x, y);
+    }
+}
@@ -0,0 +1,286 @@
+package net.grobas.view;
+
+import android.content.ContentResolver;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import net.grobas.view.util.SampledBitmapDecoder;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares PolygonImageView shaders and decodes sampled images off the UI thread.
+ */
+final class ImagePreparer {
+
+    private static final int POOL_SIZE = 2;
+    //requests waiting for a thread, the oldest ones are dropped first
+    private static final int QUEUE_SIZE = 32;
+
+    private static Executor sDefaultExecutor;
+    private static Executor sCustomExecutor;
+    private static Handler sMainHandler;
+
+    private ImagePreparer() {
+    }
+
+    /**
+     * Runs a request on the given executor or on the default one.
+     *
+     * @param executor view executor, could be null
+     * @param task     image or decode request
+     */
+    static void execute(Executor executor, Runnable task) {
+        (executor != null ? executor : getDefaultExecutor()).execute(task);
+    }
+
+    static synchronized void setDefaultExecutor(Executor executor) {
+        sCustomExecutor = executor;
+    }
+
+    static synchronized Executor getDefaultExecutor() {
+        if (sCustomExecutor != null)
+            return sCustomExecutor;
+
+        if (sDefaultExecutor == null)
+            sDefaultExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new BackgroundThreadFactory("PolygonImageView"),
+                    new DiscardOldestRequestPolicy());
+        return sDefaultExecutor;
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (sMainHandler == null)
+            sMainHandler = new Handler(Looper.getMainLooper());
+        return sMainHandler;
+    }
+
+    /**
+     * Image request of a view. Only the last request of a view is published.
+     */
+    static final class Task implements Runnable {
+        private final WeakReference<PolygonImageView> mViewRef;
+        private final Drawable mSource;
+        private final int mCanvasSize;
+        private final Object mCacheKey;
+        private final int mCropMode;
+        private final PolygonMetricsListener mMetrics;
+        private volatile boolean mCancelled;
+
+        /**
+         * Must be created on the UI thread.
+         */
+        Task(PolygonImageView view, Drawable drawable, int canvasSize, Object cacheKey, int cropMode) {
+            mViewRef = new WeakReference<PolygonImageView>(view);
+            mSource = getThreadSafeDrawable(view.getResources(), drawable);
+            mCanvasSize = canvasSize;
+            mCacheKey = cacheKey;
+            mCropMode = cropMode;
+            mMetrics = view.getMetricsListener();
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled)
+                return;
+
+            final PreparedImage image = PolygonImageView.createImage(mSource, mCanvasSize, mCacheKey, mCropMode,
+                    mMetrics != null ? mViewRef.get() : null, mMetrics);
+            if (mCancelled) {
+                if (image != null)
+                    image.release();
+                return;
+            }
+
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                publish(image);
+            } else {
+                getMainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        publish(image);
+                    }
+                });
+            }
+        }
+
+        private void publish(PreparedImage image) {
+            PolygonImageView view = mViewRef.get();
+            if (view != null && !mCancelled)
+                view.onImagePrepared(this, image);
+            else if (image != null)
+                image.release();
+        }
+
+        void cancel() {
+            mCancelled = true;
+        }
+
+        /**
+         * Dropped from a full queue, the view requests the image again.
+         */
+        void discard() {
+            if (mCancelled)
+                return;
+
+            getMainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    PolygonImageView view = mViewRef.get();
+                    if (view != null && !mCancelled)
+                        view.onImageDiscarded(Task.this);
+                }
+            });
+        }
+
+        /**
+         * Drawables are not thread safe, rasterize a copy of them.
+         *
+         * @param resources view resources
+         * @param drawable  view drawable
+         * @return drawable safe to use on a worker thread
+         */
+        private static Drawable getThreadSafeDrawable(Resources resources, Drawable drawable) {
+            if (drawable instanceof BitmapDrawable)
+                return drawable;
+
+            //The copy shares the constant state, i.e. cached vector bitmaps, mutate it to own one
+            Drawable.ConstantState state = drawable.getConstantState();
+            if (state != null)
+                return state.newDrawable(resources).mutate();
+
+            //No way to copy it, rasterize it here
+            return new BitmapDrawable(resources, PolygonImageView.drawableToBitmap(drawable));
+        }
+    }
+
+    /**
+     * Subsampled decode of a resource or uri. Only the last request of a view is published.
+     */
+    static final class DecodeTask implements Runnable {
+        private final WeakReference<PolygonImageView> mViewRef;
+        private final Resources mResources;
+        private final ContentResolver mResolver;
+        private final int mResId;
+        private final Uri mUri;
+        private final int mCanvasSize;
+        private volatile boolean mCancelled;
+
+        /**
+         * Must be created on the UI thread.
+         */
+        DecodeTask(PolygonImageView view, int resId, Uri uri, int canvasSize) {
+            mViewRef = new WeakReference<PolygonImageView>(view);
+            mResources = view.getResources();
+            mResolver = view.getContext().getContentResolver();
+            mResId = resId;
+            mUri = uri;
+            mCanvasSize = canvasSize;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled)
+                return;
+
+            final Bitmap bitmap = mResId != 0 ?
+                    SampledBitmapDecoder.decodeResource(mResources, mResId, mCanvasSize) :
+                    SampledBitmapDecoder.decodeUri(mResolver, mUri, mCanvasSize);
+            getMainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    PolygonImageView view = mViewRef.get();
+                    if (view != null && !mCancelled)
+                        view.onSampledImageDecoded(DecodeTask.this, bitmap);
+                }
+            });
+        }
+
+        int getCanvasSize() {
+            return mCanvasSize;
+        }
+
+        void cancel() {
+            mCancelled = true;
+        }
+
+        /**
+         * Dropped from a full queue, the view decodes the image again.
+         */
+        void discard() {
+            if (mCancelled)
+                return;
+
+            getMainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    PolygonImageView view = mViewRef.get();
+                    if (view != null && !mCancelled)
+                        view.onSampledDecodeDiscarded(DecodeTask.this);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the oldest waiting request when the queue is full. Scrolling lists queue requests
+     * faster than they are prepared, the oldest ones are mostly cancelled or off screen.
+     * Requests still pending are handed back to their views.
+     */
+    static final class DiscardOldestRequestPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown())
+                return;
+
+            Runnable oldest = executor.getQueue().poll();
+            if (oldest instanceof Task)
+                ((Task) oldest).discard();
+            else if (oldest instanceof DecodeTask)
+                ((DecodeTask) oldest).discard();
+            executor.execute(runnable);
+        }
+    }
+
+    /**
+     * Daemon threads on background priority.
+     */
+    static final class BackgroundThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        /**
+         * @param name thread name, numbered
+         */
+        BackgroundThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, mName + " #" + mCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package net.grobas.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PathEffect;
+import android.util.SparseArray;
+
+import net.grobas.shapes.PolygonShape;
+import net.grobas.shapes.PolygonShapeSpec;
+import net.grobas.shapes.RegularPolygonShape;
+
+/**
+ * Draws many polygon images onto one canvas without a view per image, i.e. grids of avatars
+ * drawn by a RecyclerView decoration or a single custom view.
+ * One path is built for each cell size and translated to every cell. Thumbnails are shared
+ * with the views through the {@link ThumbnailCache}. Shadows are not supported.
+ * Must be used on the drawing thread.
+ */
+public class PolygonBatchRenderer {
+
+    private PolygonShape mPolygonShape;
+    private final PolygonShapeSpec mPolygonShapeSpec;
+    private final SparseArray<Path> mPaths = new SparseArray<Path>();
+    private final Paint mPaint;
+    private final Paint mBorderPaint;
+
+    public PolygonBatchRenderer() {
+        this(new RegularPolygonShape());
+    }
+
+    /**
+     * @param polygonShape shape of every image
+     */
+    public PolygonBatchRenderer(PolygonShape polygonShape) {
+        mPolygonShape = polygonShape;
+        mPolygonShapeSpec = new PolygonShapeSpec();
+        mPolygonShapeSpec.setNumVertex(6);
+
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mBorderPaint.setStyle(Paint.Style.STROKE);
+    }
+
+    /**
+     * Draws one image into the cell at the given position.
+     *
+     * @param canvas destination canvas
+     * @param image  source image, center cropped
+     * @param left   cell left
+     * @param top    cell top
+     * @param size   cell size
+     */
+    public void draw(Canvas canvas, Bitmap image, float left, float top, int size) {
+        if (image == null || size <= 0)
+            return;
+
+        ThumbnailCache.Entry entry = getThumbnail(image, size);
+        if (entry == null)
+            return;
+
+        Path path = getPath(size);
+        mPaint.setShader(entry.getShader());
+        int count = canvas.save();
+        canvas.translate(left, top);
+        canvas.drawPath(path, mPaint);
+        if (mPolygonShapeSpec.hasBorder())
+            canvas.drawPath(path, mBorderPaint);
+        canvas.restoreToCount(count);
+        mPaint.setShader(null);
+    }
+
+    /**
+     * Draws the images in a single pass, cells share the size.
+     *
+     * @param canvas    destination canvas
+     * @param images    source images, null entries are skipped
+     * @param positions left and top pairs of each cell
+     * @param size      cell size
+     */
+    public void draw(Canvas canvas, Bitmap[] images, float[] positions, int size) {
+        if (positions.length < images.length * 2)
+            throw new IllegalArgumentException("Two positions are needed per image");
+
+        for (int i = 0; i < images.length; i++) {
+            draw(canvas, images[i], positions[i * 2], positions[i * 2 + 1], size);
+        }
+    }
+
+    /**
+     * Gets the shared path of a cell size, centered in the cell.
+     *
+     * @param size cell size
+     * @return path in cell coordinates
+     */
+    private Path getPath(int size) {
+        Path path = mPaths.get(size);
+        if (path != null)
+            return path;
+
+        float borderPadding = mPolygonShapeSpec.hasBorder() ? mPolygonShapeSpec.getBorderWidth() : 0f;
+        float diameter = size - borderPadding * 2;
+        float center = (float) size / 2;
+        float radius = diameter / 2;
+        switch (mPolygonShapeSpec.getNumVertex()) {
+            case 0: //CIRCLE
+                path = new Path();
+                path.addCircle(center, center, radius, Path.Direction.CW);
+                break;
+            case 1: //REGULAR IMAGE
+                path = new Path();
+                path.addRect(0, 0, size, size, Path.Direction.CW);
+                break;
+            case 2: //SQUARE
+                path = new Path();
+                path.addRect(center - radius, center - radius, center + radius, center + radius, Path.Direction.CW);
+                break;
+            default: //POLYGON
+                mPolygonShapeSpec.setDiameter(diameter);
+                mPolygonShapeSpec.setCenterX(center);
+                mPolygonShapeSpec.setCenterY(center);
+                //the shape path could be shared, keep a copy
+                path = new Path(mPolygonShape.getPolygonPath(mPolygonShapeSpec));
+        }
+
+        mPaths.put(size, path);
+        updateCornerEffect();
+        return path;
+    }
+
+    /**
+     * Corner radius is baked into the paths of BasePolygonShape, other outlines need
+     * a shared corner effect on the paints.
+     */
+    private void updateCornerEffect() {
+        PathEffect effect = CornerEffects.forOutline(mPolygonShape, mPolygonShapeSpec.getNumVertex(),
+                mPolygonShapeSpec.getCornerRadius());
+        mPaint.setPathEffect(effect);
+        mBorderPaint.setPathEffect(effect);
+    }
+
+    /**
+     * Gets the cached thumbnail of an image, creating it if needed.
+     */
+    private static ThumbnailCache.Entry getThumbnail(Bitmap image, int size) {
+        ThumbnailCache cache = ThumbnailCache.getInstance();
+        ThumbnailCache.Entry entry = cache.get(image, size);
+        if (entry != null)
+            return entry;
+
+        Bitmap thumbnail = PolygonImageView.extractThumbnail(image, size);
+        return thumbnail != null ? cache.put(image, size, thumbnail) : null;
+    }
+
+    /**
+     * Sets new number of vertices.
+     *
+     * @param numVertices number of vertices, 0 for a circle and 2 for a square
+     */
+    public void setVertices(int numVertices) {
+        mPolygonShapeSpec.setNumVertex(numVertices);
+        mPaths.clear();
+    }
+
+    public int getVertices() {
+        return mPolygonShapeSpec.getNumVertex();
+    }
+
+    /**
+     * Sets the rotation of every polygon.
+     *
+     * @param rotation degrees
+     */
+    public void setRotation(float rotation) {
+        mPolygonShapeSpec.setRotation(rotation);
+        mPaths.clear();
+    }
+
+    public float getRotation() {
+        return mPolygonShapeSpec.getRotation();
+    }
+
+    /**
+     * Sets new radius for corners.
+     *
+     * @param cornerRadius new corner radius
+     */
+    public void setCornerRadius(float cornerRadius) {
+        mPolygonShapeSpec.setCornerRadius(cornerRadius);
+        mPaths.clear();
+    }
+
+    public float getCornerRadius() {
+        return mPolygonShapeSpec.getCornerRadius();
+    }
+
+    /**
+     * Adds a border to every polygon.
+     *
+     * @param borderWidth width in pixels
+     * @param borderColor border color
+     */
+    public void addBorder(float borderWidth, int borderColor) {
+        mPolygonShapeSpec.setHasBorder(true);
+        mPolygonShapeSpec.setBorderWidth(borderWidth);
+        mPolygonShapeSpec.setBorderColor(borderColor);
+        mBorderPaint.setStrokeWidth(borderWidth);
+        mBorderPaint.setColor(borderColor);
+        mPaths.clear();
+    }
+
+    /**
+     * Removes the border.
+     */
+    public void clearBorder() {
+        mPolygonShapeSpec.setHasBorder(false);
+        mPaths.clear();
+    }
+
+    /**
+     * Sets a new shape.
+     *
+     * @param polygonShape new shape
+     */
+    public void setPolygonShape(PolygonShape polygonShape) {
+        mPolygonShape = polygonShape;
+        mPaths.clear();
+    }
+
+    public PolygonShape getPolygonShape() {
+        return mPolygonShape;
+    }
+
+    /**
+     * Drops the cached paths, i.e. after the shape params have changed.
+     */
+    public void invalidatePaths() {
+        mPaths.clear();
+    }
+}
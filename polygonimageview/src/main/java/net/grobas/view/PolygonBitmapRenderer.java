@@ -0,0 +1,219 @@
+package net.grobas.view;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PathEffect;
+import android.graphics.Shader;
+import android.util.Log;
+
+import net.grobas.shapes.PolygonOutlineShape;
+import net.grobas.shapes.PolygonShape;
+import net.grobas.shapes.PolygonShapeSpec;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders polygon images into bitmaps without a view, i.e. avatars for notifications, widgets
+ * or share images. Border, shadow and corner radius are taken from the spec, center and
+ * diameter from the output size. Safe to use from any thread, renders can run in parallel.
+ */
+public class PolygonBitmapRenderer {
+
+    private static final int EXPORT_POOL_SIZE = 2;
+
+    //shared by renderAll calls without executor, apart from the view images
+    private static Executor sExportExecutor;
+
+    private final PolygonShape mPolygonShape;
+    private final PolygonShapeSpec mPolygonShapeSpec;
+
+    /**
+     * @param polygonShape     shape of the images
+     * @param polygonShapeSpec vertices, rotation, border, shadow and corner radius, copied
+     */
+    public PolygonBitmapRenderer(PolygonShape polygonShape, PolygonShapeSpec polygonShapeSpec) {
+        mPolygonShape = polygonShape;
+        mPolygonShapeSpec = polygonShapeSpec.snapshot();
+    }
+
+    /**
+     * Renders an image into a pooled bitmap. Give it back to {@link BitmapPool} when it's not
+     * needed anymore.
+     *
+     * @param source source image, center cropped
+     * @param size   output size
+     * @return square bitmap or null if there is no memory
+     */
+    public Bitmap render(Bitmap source, int size) {
+        Bitmap output;
+        try {
+            output = BitmapPool.getInstance().get(size, size, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            Log.e("PolygonBitmapRenderer", "OutOfMemory during bitmap creation");
+            return null;
+        }
+        return render(source, output);
+    }
+
+    /**
+     * Renders an image into a caller bitmap, centered in its largest square. The bitmap is cleared.
+     *
+     * @param source source image, center cropped
+     * @param output mutable destination
+     * @return the output bitmap
+     */
+    public Bitmap render(Bitmap source, Bitmap output) {
+        output.eraseColor(Color.TRANSPARENT);
+        int size = Math.min(output.getWidth(), output.getHeight());
+        if (size <= 0)
+            return output;
+
+        PolygonShapeSpec spec = new PolygonShapeSpec(mPolygonShapeSpec);
+        float borderPadding = spec.hasBorder() ? spec.getBorderWidth() : 0f;
+        float shadowPadding = spec.hasShadow() ? spec.getShadowRadius() : 0f;
+        float diameter = size - (borderPadding + shadowPadding) * 2;
+        if (diameter <= 0)
+            return output;
+        spec.updatePosition(output.getWidth() / 2f, output.getHeight() / 2f, diameter);
+
+        Path path = buildOutline(mPolygonShape, spec);
+        PathEffect effect = CornerEffects.forOutline(mPolygonShape, spec.getNumVertex(), spec.getCornerRadius());
+        Canvas canvas = new Canvas(output);
+
+        if (spec.hasShadow()) {
+            Paint shadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            shadowPaint.setColor(spec.getShadowColor());
+            shadowPaint.setMaskFilter(new BlurMaskFilter(spec.getShadowRadius(), BlurMaskFilter.Blur.NORMAL));
+            shadowPaint.setPathEffect(effect);
+            int count = canvas.save();
+            canvas.translate(spec.getShadowXOffset(), spec.getShadowYOffset());
+            canvas.drawPath(path, shadowPaint);
+            canvas.restoreToCount(count);
+        }
+
+        //Center crop the source into the polygon square
+        Matrix matrix = new Matrix();
+        PolygonImageView.setCenterCrop(matrix, source.getWidth(), source.getHeight(), (int) diameter);
+        matrix.postTranslate(spec.getCenterX() - diameter / 2, spec.getCenterY() - diameter / 2);
+        BitmapShader shader = new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        shader.setLocalMatrix(matrix);
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        paint.setShader(shader);
+        paint.setPathEffect(effect);
+        canvas.drawPath(path, paint);
+
+        if (spec.hasBorder()) {
+            Paint borderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            borderPaint.setStyle(Paint.Style.STROKE);
+            borderPaint.setStrokeWidth(spec.getBorderWidth());
+            borderPaint.setColor(spec.getBorderColor());
+            borderPaint.setPathEffect(effect);
+            canvas.drawPath(path, borderPaint);
+        }
+        return output;
+    }
+
+    /**
+     * Renders every image on an executor, each into a pooled bitmap.
+     *
+     * @param sources  source images
+     * @param size     output size
+     * @param executor executor, null to use a bounded export executor, apart from the views
+     * @param callback receives the results on the executor threads
+     */
+    public void renderAll(final List<Bitmap> sources, final int size, Executor executor, final Callback callback) {
+        if (sources.isEmpty()) {
+            callback.onFinished();
+            return;
+        }
+
+        if (executor == null)
+            executor = getExportExecutor();
+        final AtomicInteger remaining = new AtomicInteger(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            final int index = i;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        callback.onRendered(index, render(sources.get(index), size));
+                    } finally {
+                        if (remaining.decrementAndGet() == 0)
+                            callback.onFinished();
+                    }
+                }
+            });
+        }
+    }
+
+    private static synchronized Executor getExportExecutor() {
+        if (sExportExecutor == null)
+            sExportExecutor = Executors.newFixedThreadPool(EXPORT_POOL_SIZE,
+                    new ImagePreparer.BackgroundThreadFactory("PolygonBitmapRenderer"));
+        return sExportExecutor;
+    }
+
+    /**
+     * Outline of a spec, circles and squares do not use the shape. Safe on any thread.
+     *
+     * @param shape outline shape
+     * @param spec  positioned spec, not shared
+     * @return new path
+     */
+    static Path buildOutline(PolygonShape shape, PolygonShapeSpec spec) {
+        Path path = new Path();
+        float center = spec.getCenterX();
+        float radius = spec.getDiameter() / 2;
+        switch (spec.getNumVertex()) {
+            case 0: //CIRCLE
+                path.addCircle(center, spec.getCenterY(), radius, Path.Direction.CW);
+                break;
+            case 1: //REGULAR IMAGE
+            case 2: //SQUARE
+                path.addRect(center - radius, spec.getCenterY() - radius, center + radius,
+                        spec.getCenterY() + radius, Path.Direction.CW);
+                break;
+            default: //POLYGON
+                if (shape instanceof PolygonOutlineShape) {
+                    ((PolygonOutlineShape) shape).getPolygonPath(spec, path);
+                } else {
+                    //custom shapes are not known to be thread safe
+                    synchronized (shape) {
+                        path.set(shape.getPolygonPath(spec));
+                    }
+                }
+        }
+        return path;
+    }
+
+    public PolygonShape getPolygonShape() {
+        return mPolygonShape;
+    }
+
+    /**
+     * Results of {@link #renderAll}, called on the executor threads.
+     */
+    public interface Callback {
+
+        /**
+         * @param index  source index
+         * @param result rendered bitmap, null if there was no memory
+         */
+        void onRendered(int index, Bitmap result);
+
+        /**
+         * Every source has been rendered.
+         */
+        void onFinished();
+    }
+}
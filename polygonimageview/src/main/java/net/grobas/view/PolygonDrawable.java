@@ -0,0 +1,220 @@
+package net.grobas.view;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PathEffect;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import net.grobas.shapes.PolygonGeometryKey;
+import net.grobas.shapes.PolygonShape;
+import net.grobas.shapes.PolygonShapeSpec;
+
+/**
+ * Polygon cropped image as a drawable, i.e. for backgrounds, compound drawables or list items
+ * without an extra view. Paths are only built when the bounds size changes, and drawables
+ * created from the same constant state share the thumbnail, path and shadow.
+ * Nothing is drawn with software-only features, hardware acceleration is kept.
+ */
+public class PolygonDrawable extends Drawable {
+
+    private final PolygonState mState;
+    private final Paint mPaint;
+    private final Paint mBorderPaint;
+    private final Paint mShadowPaint;
+
+    //bounds geometry
+    private PolygonState.Outline mOutline;
+    private float mLeft, mTop;
+
+    /**
+     * @param bitmap           source image, center cropped
+     * @param polygonShape     shape of the image
+     * @param polygonShapeSpec vertices, rotation, border, shadow and corner radius, copied
+     */
+    public PolygonDrawable(Bitmap bitmap, PolygonShape polygonShape, PolygonShapeSpec polygonShapeSpec) {
+        this(new PolygonState(bitmap, polygonShape, polygonShapeSpec.snapshot()));
+    }
+
+    private PolygonDrawable(PolygonState state) {
+        mState = state;
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mBorderPaint.setStyle(Paint.Style.STROKE);
+        mBorderPaint.setStrokeWidth(state.mSpec.getBorderWidth());
+        mBorderPaint.setColor(state.mSpec.getBorderColor());
+        mShadowPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        mShadowPaint.setColor(state.mSpec.getShadowColor());
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        int size = Math.min(bounds.width(), bounds.height());
+        mOutline = size > 0 ? mState.getOutline(size) : null;
+        mLeft = bounds.left + (bounds.width() - size) / 2f;
+        mTop = bounds.top + (bounds.height() - size) / 2f;
+
+        mPaint.setShader(mOutline != null ? mOutline.shader : null);
+        PathEffect effect = mOutline != null ? mOutline.effect : null;
+        mPaint.setPathEffect(effect);
+        mBorderPaint.setPathEffect(effect);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (mOutline == null || mOutline.shader == null)
+            return;
+
+        int count = canvas.save();
+        canvas.translate(mLeft, mTop);
+        if (mOutline.shadow != null)
+            canvas.drawBitmap(mOutline.shadow, mOutline.shadowLeft, mOutline.shadowTop, mShadowPaint);
+        canvas.drawPath(mOutline.path, mPaint);
+        if (mState.mSpec.hasBorder())
+            canvas.drawPath(mOutline.path, mBorderPaint);
+        canvas.restoreToCount(count);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        mBorderPaint.setAlpha(alpha);
+        mShadowPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+        mBorderPaint.setColorFilter(cf);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return Math.min(mState.mBitmap.getWidth(), mState.mBitmap.getHeight());
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return getIntrinsicWidth();
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        return mState;
+    }
+
+    public Bitmap getBitmap() {
+        return mState.mBitmap;
+    }
+
+    /**
+     * Source and outlines shared by every drawable of the same state. Only the last bounds size
+     * is kept, drawables with other sizes keep their own outline.
+     */
+    static final class PolygonState extends ConstantState {
+        private final Bitmap mBitmap;
+        private final PolygonShape mShape;
+        private final PolygonShapeSpec mSpec;
+        private Outline mOutline;
+
+        PolygonState(Bitmap bitmap, PolygonShape shape, PolygonShapeSpec spec) {
+            mBitmap = bitmap;
+            mShape = shape;
+            mSpec = spec;
+        }
+
+        @Override
+        public Drawable newDrawable() {
+            return new PolygonDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+
+        /**
+         * Gets the outline of a size, built if the last one has another size.
+         *
+         * @param size bounds size
+         * @return outline
+         */
+        Outline getOutline(int size) {
+            if (mOutline == null || mOutline.size != size)
+                mOutline = new Outline(size);
+            return mOutline;
+        }
+
+        /**
+         * Path, thumbnail and shadow of a bounds size, in square local coordinates.
+         */
+        final class Outline {
+            final int size;
+            final Path path;
+            final PathEffect effect;
+            final BitmapShader shader;
+            Bitmap shadow;
+            float shadowLeft, shadowTop;
+
+            Outline(int size) {
+                this.size = size;
+                PolygonShapeSpec spec = new PolygonShapeSpec(mSpec);
+                float borderPadding = spec.hasBorder() ? spec.getBorderWidth() : 0f;
+                float shadowPadding = spec.hasShadow() ? spec.getShadowRadius() : 0f;
+                spec.updatePosition(size / 2f, size / 2f, Math.max(0f, size - (borderPadding + shadowPadding) * 2));
+
+                path = PolygonBitmapRenderer.buildOutline(mShape, spec);
+                effect = CornerEffects.forOutline(mShape, spec.getNumVertex(), spec.getCornerRadius());
+                shader = getThumbnailShader(size);
+                if (spec.hasShadow() && spec.getDiameter() > 0 && spec.getShadowRadius() > 0)
+                    renderShadow(spec);
+            }
+
+            /**
+             * Thumbnail shader shared with the views through the thumbnail cache.
+             */
+            private BitmapShader getThumbnailShader(int size) {
+                ThumbnailCache cache = ThumbnailCache.getInstance();
+                ThumbnailCache.Entry entry = cache.get(mBitmap, size);
+                if (entry == null) {
+                    Bitmap thumbnail = PolygonImageView.extractThumbnail(mBitmap, size);
+                    if (thumbnail == null)
+                        return null;
+                    entry = cache.put(mBitmap, size, thumbnail);
+                }
+                return entry.getShader();
+            }
+
+            /**
+             * Gets the blurred shadow from the shared cache or pre-renders it, blur filters are software only.
+             */
+            private void renderShadow(PolygonShapeSpec spec) {
+                PolygonGeometryKey key = ShadowRenderer.getKey(mShape, spec);
+                shadow = ShadowRenderer.getCached(key);
+                if (shadow == null) {
+                    try {
+                        shadow = ShadowRenderer.render(spec, path, effect, key);
+                    } catch (OutOfMemoryError e) {
+                        Log.e("PolygonDrawable", "OutOfMemory during shadow creation");
+                        return;
+                    }
+                }
+                shadowLeft = ShadowRenderer.getLeft(spec);
+                shadowTop = ShadowRenderer.getTop(spec);
+            }
+        }
+    }
+}
@@ -25,13 +25,13 @@ import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
-import android.graphics.CornerPathEffect;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.PathEffect;
 import android.graphics.Shader;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.media.ThumbnailUtils;
 import android.net.Uri;
 import android.os.Build;
 import android.support.annotation.ColorRes;
@@ -39,11 +39,18 @@ import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.widget.ImageView;
 
+import net.grobas.shapes.PolygonGeometryKey;
+import net.grobas.shapes.PolygonOutlineShape;
 import net.grobas.shapes.PolygonShape;
 import net.grobas.shapes.PolygonShapeSpec;
 import net.grobas.shapes.RegularPolygonShape;
+import net.grobas.view.util.SampledBitmapDecoder;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * Construct a custom ImageView with a regular polygonal form.
@@ -58,6 +65,47 @@ import net.grobas.shapes.RegularPolygonShape;
  */
 public class PolygonImageView extends ImageView {
 
+    /**
+     * Draws on a software layer, shadows are rendered by the paint on every draw.
+     */
+    public static final int RENDER_MODE_SOFTWARE = 0;
+    /**
+     * Keeps hardware acceleration, shadows are pre-rendered into a bitmap.
+     */
+    public static final int RENDER_MODE_HARDWARE = 1;
+
+    /**
+     * Crops a thumbnail of the image for each canvas size.
+     */
+    public static final int CROP_MODE_THUMBNAIL = 0;
+    /**
+     * Draws the original image, center crop applied through the shader matrix.
+     */
+    public static final int CROP_MODE_SHADER_MATRIX = 1;
+
+    /**
+     * Rotates the polygon vertices, the path is rebuilt on each angle change.
+     */
+    public static final int ROTATION_MODE_PATH = 0;
+    /**
+     * Rotates the canvas around the polygon center, the path is built once. Use it to animate
+     * the rotation angle. Shadow offsets turn along with the canvas in software render mode.
+     */
+    public static final int ROTATION_MODE_CANVAS = 1;
+    /**
+     * Keeps the image while detached, reattaching costs nothing. Default, views still drawn after
+     * detach, i.e. in exit transitions, keep their image.
+     */
+    public static final int DETACH_POLICY_KEEP = 0;
+    /**
+     * Drops the image shader and thumbnail while detached, they are left to the garbage collector.
+     */
+    public static final int DETACH_POLICY_RELEASE = 1;
+    /**
+     * Drops the image shader and gives the thumbnail back to the bitmap pool while detached.
+     */
+    public static final int DETACH_POLICY_RECYCLE = 2;
+
     //draws
     private Paint mPaint;
     private Paint mBorderPaint;
@@ -68,6 +116,93 @@ public class PolygonImageView extends ImageView {
 
     private int canvasWidth, canvasHeight;
 
+    //rendering mode
+    private int mRenderMode;
+    private Paint mShadowPaint;
+    private Bitmap mShadowBitmap;
+    private float mShadowLeft, mShadowTop;
+    private boolean mShadowDirty;
+    private boolean mShadowBitmapFailed;
+
+    //thumbnail cache
+    private boolean mThumbnailCacheEnabled;
+    private Object mImageCacheKey;
+    private Object mNextImageCacheKey;
+
+    //async image preparation
+    private boolean mAsyncImagePreparation;
+    private Executor mImageExecutor;
+    private ImagePreparer.Task mPendingImageTask;
+    //source bitmap of the shown image, or drawable if it's not a bitmap
+    private Object mPreparedSource;
+    private PreparedImage mImage;
+    //replaced images, back to the pool once a frame without them has been drawn
+    private final ArrayList<PreparedImage> mRetiredImages = new ArrayList<PreparedImage>();
+    private final ArrayList<PreparedImage> mDrawnOverImages = new ArrayList<PreparedImage>();
+    private final Runnable mReleaseDrawnOverImages = new Runnable() {
+        @Override
+        public void run() {
+            releaseDrawnOverImages();
+        }
+    };
+    private boolean mImageReleased;
+    private int mDetachPolicy;
+
+    //image crop
+    private int mCropMode;
+    private final Matrix mShaderMatrix = new Matrix();
+
+    //canvas rotation
+    private int mRotationMode;
+    private float mCanvasRotation;
+    private boolean mUprightImage;
+
+    //vertex morph
+    private PolygonMorph mMorph;
+    private PolygonShape mMorphShape;
+    private PolygonShapeSpec mMorphSpec;
+    private float mMorphFraction;
+    private boolean mMorphing;
+
+    //hit testing
+    private static final int HIT_SAMPLES_PER_VERTEX = 8;
+    private HitOutline mHitOutline;
+    //geometry of the last rebuild, touches never trigger one
+    private int mHitNumVertex = -1;
+    private float mHitCenterX, mHitCenterY, mHitRadius;
+    private boolean mTouchFiltering;
+
+    //work deferred to the next draw, so several setters or layout passes only rebuild once
+    private static final int DIRTY_SIZE = 1;
+    private static final int DIRTY_POLYGON = 1 << 1;
+    private static final int DIRTY_IMAGE = 1 << 2;
+    private int mDirtyFlags;
+
+    //last requested image, refreshes with the same source, size, crop mode and key are skipped
+    private Object mRequestedSource;
+    private int mRequestedSize;
+    private int mRequestedCropMode;
+    private Object mRequestedCacheKey;
+
+    //subsampled decoding
+    private boolean mSampledDecoding;
+    private int mSampledResource;
+    private Uri mSampledUri;
+    private int mSampledSize;
+    private boolean mDecodingSampledImage;
+    private ImagePreparer.DecodeTask mPendingDecodeTask;
+    //decodes after the layout pass, never while drawing
+    private final Runnable mSampledDecode = new Runnable() {
+        @Override
+        public void run() {
+            decodeSampledImage();
+        }
+    };
+
+    //metrics
+    private static volatile PolygonMetricsListener sGlobalMetricsListener;
+    private PolygonMetricsListener mMetricsListener;
+
     public PolygonImageView(Context context) {
         this(context, null);
     }
@@ -93,6 +228,17 @@ public class PolygonImageView extends ImageView {
             mPolygonShapeSpec.setHasBorder(attributes.getBoolean(R.styleable.PolygonImageView_poly_border, false));
             mPolygonShapeSpec.setBorderColor(attributes.getColor(R.styleable.PolygonImageView_poly_border_color, Color.WHITE));
             mPolygonShapeSpec.setBorderWidth(attributes.getDimension(R.styleable.PolygonImageView_poly_border_width, 4));
+            mRenderMode = attributes.getInt(R.styleable.PolygonImageView_poly_render_mode, RENDER_MODE_SOFTWARE);
+            mCropMode = attributes.getInt(R.styleable.PolygonImageView_poly_crop_mode, CROP_MODE_THUMBNAIL);
+            mSampledDecoding = attributes.getBoolean(R.styleable.PolygonImageView_poly_downsample, false);
+            mRotationMode = attributes.getInt(R.styleable.PolygonImageView_poly_rotation_mode, ROTATION_MODE_PATH);
+            mUprightImage = attributes.getBoolean(R.styleable.PolygonImageView_poly_upright_image, false);
+            mTouchFiltering = attributes.getBoolean(R.styleable.PolygonImageView_poly_touch_filter, false);
+            mDetachPolicy = attributes.getInt(R.styleable.PolygonImageView_poly_detach_policy, DETACH_POLICY_KEEP);
+            if (mRotationMode == ROTATION_MODE_CANVAS) {
+                mCanvasRotation = mPolygonShapeSpec.getRotation();
+                mPolygonShapeSpec.setRotation(0f);
+            }
 
         } finally {
             attributes.recycle();
@@ -106,29 +252,142 @@ public class PolygonImageView extends ImageView {
      */
     @SuppressLint("NewApi")
     private void init() {
-        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mPaint.setPathEffect(new CornerPathEffect(mPolygonShapeSpec.getCornerRadius()));
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
         mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mBorderPaint.setStyle(Paint.Style.STROKE);
-        mBorderPaint.setPathEffect(new CornerPathEffect(mPolygonShapeSpec.getCornerRadius()));
+        mShadowPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
 
         if(mPolygonShapeSpec.hasBorder()) {
             mBorderPaint.setColor(mPolygonShapeSpec.getBorderColor());
             mBorderPaint.setStrokeWidth(mPolygonShapeSpec.getBorderWidth());
         }
 
-        if (mPolygonShapeSpec.hasShadow()) {
+        updateShadowPaint();
+        updateLayerType();
+
+        mPolygonShape = new RegularPolygonShape();
+        updateCornerEffect();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+            PolygonMemoryTrimmer.register(this);
+    }
+
+    /**
+     * Corner radius is baked into the paths of BasePolygonShape, other outlines need
+     * a shared corner effect on the paints.
+     */
+    private void updateCornerEffect() {
+        PathEffect effect = CornerEffects.forOutline(mPolygonShape, mPolygonShapeSpec.getNumVertex(),
+                mPolygonShapeSpec.getCornerRadius());
+        if (mPaint.getPathEffect() != effect) {
+            mPaint.setPathEffect(effect);
+            mBorderPaint.setPathEffect(effect);
+        }
+    }
+
+    /**
+     * Shadow on the border paint in software mode, pre-rendered bitmap in hardware mode.
+     */
+    private void updateShadowPaint() {
+        if (mPolygonShapeSpec.hasShadow() && useSoftwareShadow()) {
             //Shadow on border even if isBordered is false. Better effect and performance that
             //using shadow on main paint
             mBorderPaint.setShadowLayer(mPolygonShapeSpec.getShadowRadius(), mPolygonShapeSpec.getShadowXOffset(),
                     mPolygonShapeSpec.getShadowYOffset(), mPolygonShapeSpec.getShadowColor());
+        } else {
+            mBorderPaint.clearShadowLayer();
         }
+        //tints the alpha-only shadow bitmap
+        mShadowPaint.setColor(mPolygonShapeSpec.getShadowColor());
+        mShadowDirty = true;
+    }
 
+    /**
+     * Software layer only in software mode or when the shadow bitmap is not available.
+     */
+    @SuppressLint("NewApi")
+    private void updateLayerType() {
         //Avoid known shadow problems
-        if (Build.VERSION.SDK_INT > 13)
-            setLayerType(LAYER_TYPE_SOFTWARE, null);
+        if (Build.VERSION.SDK_INT > 13) {
+            boolean software = mRenderMode == RENDER_MODE_SOFTWARE ||
+                    (mPolygonShapeSpec.hasShadow() && mShadowBitmapFailed);
+            int layerType = software ? LAYER_TYPE_SOFTWARE : LAYER_TYPE_NONE;
+            if (getLayerType() != layerType)
+                setLayerType(layerType, null);
+        }
+    }
 
-        mPolygonShape = new RegularPolygonShape();
+    /**
+     * Indicates if the shadow is drawn by the border paint.
+     *
+     * @return boolean
+     */
+    private boolean useSoftwareShadow() {
+        return mRenderMode == RENDER_MODE_SOFTWARE || mShadowBitmapFailed;
+    }
+
+    /**
+     * Gets the pre-rendered shadow from the shared cache, or renders it into an alpha-only bitmap.
+     * While morphing the shadow is the one of the start outline.
+     */
+    private void renderShadowBitmap() {
+        mShadowDirty = false;
+        mShadowBitmap = null;
+        if (!mPolygonShapeSpec.hasShadow() || mPolygonShapeSpec.getDiameter() <= 0 ||
+                mPolygonShapeSpec.getShadowRadius() <= 0 || (mPolygonShapeSpec.getNumVertex() > 2 && mPath == null))
+            return;
+
+        mShadowLeft = ShadowRenderer.getLeft(mPolygonShapeSpec);
+        mShadowTop = ShadowRenderer.getTop(mPolygonShapeSpec);
+
+        PolygonGeometryKey key = ShadowRenderer.getKey(mPolygonShape, mPolygonShapeSpec);
+        Bitmap bitmap = ShadowRenderer.getCached(key);
+        if (bitmap == null) {
+            //the key is the start shape, a morph keeps its shadow until it ends
+            Path outline = mMorphing && mPolygonShapeSpec.getNumVertex() > 2 ?
+                    mPolygonShape.getPolygonPath(mPolygonShapeSpec) : mPath;
+            try {
+                bitmap = ShadowRenderer.render(mPolygonShapeSpec, outline, mPaint.getPathEffect(), key);
+            } catch (OutOfMemoryError e) {
+                Log.e("PolygonImageView", "OutOfMemory during shadow creation, using a software layer");
+                mShadowBitmapFailed = true;
+                updateShadowPaint();
+                updateLayerType();
+                return;
+            }
+            PolygonMetricsListener metrics = getMetricsListener();
+            if (metrics != null)
+                metrics.onBitmapAllocated(this, bitmap.getWidth(), bitmap.getHeight());
+        }
+        mShadowBitmap = bitmap;
+    }
+
+    /**
+     * Selects how the view is rendered.
+     *
+     * @param renderMode {@link #RENDER_MODE_SOFTWARE} or {@link #RENDER_MODE_HARDWARE}
+     */
+    public void setRenderMode(int renderMode) {
+        if (renderMode != RENDER_MODE_SOFTWARE && renderMode != RENDER_MODE_HARDWARE)
+            throw new IllegalArgumentException("Unknown render mode: " + renderMode);
+        if (mRenderMode == renderMode)
+            return;
+
+        mRenderMode = renderMode;
+        mShadowBitmapFailed = false;
+        mShadowBitmap = null;
+        updateShadowPaint();
+        updateLayerType();
+        invalidate();
+    }
+
+    /**
+     * Returns the render mode.
+     *
+     * @return {@link #RENDER_MODE_SOFTWARE} or {@link #RENDER_MODE_HARDWARE}
+     */
+    public int getRenderMode() {
+        return mRenderMode;
     }
 
     /**
@@ -143,198 +402,1023 @@ public class PolygonImageView extends ImageView {
     protected void onSizeChanged(int w, int h, int oldW, int oldH) {
         super.onSizeChanged(w, h, oldW, oldH);
 
-        canvasWidth = w;
-        canvasHeight = h;
-        updatePolygonSize();
+        canvasWidth = w;
+        canvasHeight = h;
+        mShadowDirty = true;
+        scheduleUpdate(DIRTY_SIZE);
+
+        //sampled images are decoded with the final size, once the layout pass is over
+        if (Math.min(canvasWidth, canvasHeight) != Math.min(oldW, oldH)) {
+            scheduleUpdate(DIRTY_IMAGE);
+            scheduleSampledDecode();
+        }
+    }
+
+    /**
+     * Restores the image released on detach, lazily on the next draw or on the image executor
+     * in async mode, so reattaching does not prepare it on the spot.
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mImageReleased) {
+            mImageReleased = false;
+            scheduleUpdate(DIRTY_IMAGE);
+        }
+    }
+
+    /**
+     * Releases the image while the view is not attached, following the detach policy.
+     * The software layer is destroyed by the view itself.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        //a cancelled request is restarted on attach, even if the image is kept
+        if (mPendingImageTask != null) {
+            cancelImagePreparation();
+            mImageReleased = true;
+        }
+        if (mDetachPolicy != DETACH_POLICY_KEEP && mImage != null) {
+            releaseImage(mDetachPolicy == DETACH_POLICY_RECYCLE);
+            mImageReleased = true;
+        }
+        //posted runnables could never run once detached
+        removeCallbacks(mReleaseDrawnOverImages);
+        releaseDrawnOverImages();
+        dropRetiredImages();
+    }
+
+    /**
+     * Selects what happens to the image while the view is detached, i.e. in a back stack
+     * fragment or an offscreen ViewPager page.
+     *
+     * @param detachPolicy {@link #DETACH_POLICY_KEEP}, {@link #DETACH_POLICY_RELEASE} or
+     *                     {@link #DETACH_POLICY_RECYCLE}
+     */
+    public void setDetachPolicy(int detachPolicy) {
+        if (detachPolicy != DETACH_POLICY_KEEP && detachPolicy != DETACH_POLICY_RELEASE &&
+                detachPolicy != DETACH_POLICY_RECYCLE)
+            throw new IllegalArgumentException("Unknown detach policy: " + detachPolicy);
+        mDetachPolicy = detachPolicy;
+    }
+
+    public int getDetachPolicy() {
+        return mDetachPolicy;
+    }
+
+    /**
+     * Drops the image shader, thumbnail and shadow bitmap.
+     *
+     * @param recycle true to give an owned thumbnail back to the bitmap pool
+     */
+    private void releaseImage(boolean recycle) {
+        cancelImagePreparation();
+        if (mImage != null) {
+            setPreparedImage(null, recycle);
+            mPreparedSource = null;
+        }
+        mShadowBitmap = null;
+        mShadowDirty = true;
+    }
+
+    /**
+     * Releases the image, the shadow and the software layer under memory pressure,
+     * they are rebuilt on the next draw.
+     */
+    void trimMemory() {
+        releaseImage(true);
+        //hidden views could not draw a new frame for a long time
+        dropRetiredImages();
+        destroyDrawingCache();
+        scheduleUpdate(DIRTY_IMAGE);
+    }
+
+    /**
+     * Force Override to solve bug on Lollipop
+     *
+     * @param widthMeasureSpec  Width Spec Measure
+     * @param heightMeasureSpec Height Spec Measure
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = measureWidth(widthMeasureSpec);
+        int height = measureHeight(heightMeasureSpec);
+        setMeasuredDimension(width, height);
+    }
+
+    private int measureWidth(int measureSpecWidth) {
+        return measure(measureSpecWidth);
+    }
+
+    private int measureHeight(int measureSpecHeight) {
+        //Force do not square measure to solve bug (use base 2 better performance)
+        return (measure(measureSpecHeight) + 2);
+    }
+
+    private int measure(int measureSpec) {
+        int result;
+        int specMode = MeasureSpec.getMode(measureSpec);
+        int specSize = MeasureSpec.getSize(measureSpec);
+
+        if (specMode == MeasureSpec.EXACTLY || specMode == MeasureSpec.AT_MOST) {
+            result = specSize;
+        } else {
+            result = Math.min(canvasWidth, canvasHeight);
+        }
+
+        return result;
+    }
+
+    /**
+     * Draw the polygon form.
+     *
+     * @param canvas main canvas
+     */
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        updatePendingChanges();
+        PolygonMetricsListener metrics = getMetricsListener();
+        if (metrics == null) {
+            drawPolygon(canvas);
+        } else {
+            long start = System.nanoTime();
+            drawPolygon(canvas);
+            metrics.onDraw(this, System.nanoTime() - start);
+        }
+        scheduleRetiredImagesRelease();
+    }
+
+    /**
+     * Display lists recorded before this frame could still draw the retired images. They go
+     * back to the pool after the frame is synced, once the traversal is over.
+     */
+    private void scheduleRetiredImagesRelease() {
+        if (mRetiredImages.isEmpty())
+            return;
+
+        for (int i = 0; i < mRetiredImages.size(); i++)
+            mDrawnOverImages.add(mRetiredImages.get(i));
+        mRetiredImages.clear();
+        removeCallbacks(mReleaseDrawnOverImages);
+        post(mReleaseDrawnOverImages);
+    }
+
+    private void releaseDrawnOverImages() {
+        for (int i = 0; i < mDrawnOverImages.size(); i++)
+            mDrawnOverImages.get(i).release();
+        mDrawnOverImages.clear();
+    }
+
+    /**
+     * Forgets the retired images not drawn over yet. They are left to the garbage collector,
+     * a pending display list could still draw them.
+     */
+    private void dropRetiredImages() {
+        mRetiredImages.clear();
+    }
+
+    /**
+     * Draw the polygon form, without measuring it.
+     *
+     * @param canvas main canvas
+     */
+    private void drawPolygon(Canvas canvas) {
+        if (getDrawable() == null || getDrawable().getIntrinsicWidth() == 0 ||
+                getDrawable().getIntrinsicHeight() == 0)
+            return;
+
+        if (mPolygonShapeSpec.getNumVertex() == 1) { //REGULAR IMAGE VIEW
+            super.onDraw(canvas);
+            return;
+        }
+
+        boolean rotated = mRotationMode == ROTATION_MODE_CANVAS && mCanvasRotation != 0;
+        float centerX = mPolygonShapeSpec.getCenterX();
+        float centerY = mPolygonShapeSpec.getCenterY();
+        int count = 0;
+
+        if (useSoftwareShadow()) {
+            if (rotated) {
+                count = canvas.save();
+                canvas.rotate(mCanvasRotation, centerX, centerY);
+            }
+            if (mPolygonShapeSpec.hasShadow() || mPolygonShapeSpec.hasBorder())
+                drawOutline(canvas, mBorderPaint);
+        } else {
+            if (mShadowDirty)
+                renderShadowBitmap();
+            if (mShadowBitmap != null) {
+                if (rotated) {
+                    //Rotate the shadow around its own center, keeping the offsets
+                    count = canvas.save();
+                    canvas.rotate(mCanvasRotation, centerX + mPolygonShapeSpec.getShadowXOffset(),
+                            centerY + mPolygonShapeSpec.getShadowYOffset());
+                    canvas.drawBitmap(mShadowBitmap, mShadowLeft, mShadowTop, mShadowPaint);
+                    canvas.restoreToCount(count);
+                } else {
+                    canvas.drawBitmap(mShadowBitmap, mShadowLeft, mShadowTop, mShadowPaint);
+                }
+            }
+            if (rotated) {
+                count = canvas.save();
+                canvas.rotate(mCanvasRotation, centerX, centerY);
+            }
+            if (mPolygonShapeSpec.hasBorder())
+                drawOutline(canvas, mBorderPaint);
+        }
+        //Image could be still on its way in async mode
+        if (mPaint.getShader() != null)
+            drawOutline(canvas, mPaint);
+        if (rotated)
+            canvas.restoreToCount(count);
+    }
+
+    /**
+     * Draw the polygon outline with a paint.
+     *
+     * @param canvas main canvas
+     * @param paint  image or border paint
+     */
+    private void drawOutline(Canvas canvas, Paint paint) {
+        float radius = mPolygonShapeSpec.getDiameter() / 2;
+        switch (mPolygonShapeSpec.getNumVertex()) {
+            case 0: //CIRCLE
+                canvas.drawCircle(mPolygonShapeSpec.getCenterX(), mPolygonShapeSpec.getCenterY(), radius, paint);
+                break;
+            case 2: //SQUARE
+                canvas.drawRect(mPolygonShapeSpec.getCenterX() - radius, mPolygonShapeSpec.getCenterY() - radius,
+                        mPolygonShapeSpec.getCenterX() + radius, mPolygonShapeSpec.getCenterY() + radius, paint);
+                break;
+            default: //POLYGON
+                canvas.drawPath(mPath, paint);
+        }
+    }
+
+    /**
+     * Take cares about padding changes.
+     *
+     * @param start  start
+     * @param top    top
+     * @param end    end
+     * @param bottom bottom
+     */
+    @TargetApi(17)
+    @Override
+    public void setPaddingRelative(int start, int top, int end, int bottom) {
+        super.setPaddingRelative(start, top, end, bottom);
+        scheduleUpdate(DIRTY_SIZE);
+    }
+
+    /**
+     * Take cares about padding changes.
+     *
+     * @param left   left
+     * @param top    top
+     * @param right  right
+     * @param bottom bottom
+     */
+    @Override
+    public void setPadding(int left, int top, int right, int bottom) {
+        super.setPadding(left, top, right, bottom);
+        scheduleUpdate(DIRTY_SIZE);
+    }
+
+    /**
+     * Update image.
+     *
+     * @param bm new image.
+     */
+    @Override
+    public void setImageBitmap(Bitmap bm) {
+        //the image is refreshed by setImageDrawable
+        super.setImageBitmap(bm);
+    }
+
+    /**
+     * Update image.
+     *
+     * @param drawable new image.
+     */
+    @Override
+    public void setImageDrawable(Drawable drawable) {
+        takeImageCacheKey();
+        if (!mDecodingSampledImage)
+            clearSampledSource();
+        super.setImageDrawable(drawable);
+        refreshNewImage();
+        invalidate();
+    }
+
+    /**
+     * Update image with a key for the thumbnail cache.
+     *
+     * @param bm       new image.
+     * @param cacheKey key identifying the image, null to use the bitmap itself.
+     */
+    public void setImageBitmap(Bitmap bm, Object cacheKey) {
+        mNextImageCacheKey = cacheKey;
+        setImageBitmap(bm);
+    }
+
+    /**
+     * Update image with a key for the thumbnail cache.
+     *
+     * @param drawable new image.
+     * @param cacheKey key identifying the image, null to use the drawable itself.
+     */
+    public void setImageDrawable(Drawable drawable, Object cacheKey) {
+        mNextImageCacheKey = cacheKey;
+        setImageDrawable(drawable);
+    }
+
+    /**
+     * Update image.
+     *
+     * @param resId new image.
+     */
+    @Override
+    public void setImageResource(@DrawableRes int resId) {
+        takeImageCacheKey();
+        if (mSampledDecoding) {
+            setSampledSource(resId, null);
+            return;
+        }
+
+        clearSampledSource();
+        super.setImageResource(resId);
+        refreshNewImage();
+        invalidate();
+    }
+
+    /**
+     * Update image.
+     *
+     * @param uri new image.
+     */
+    @Override
+    public void setImageURI(Uri uri) {
+        takeImageCacheKey();
+        if (mSampledDecoding && uri != null) {
+            setSampledSource(0, uri);
+            return;
+        }
+
+        clearSampledSource();
+        super.setImageURI(uri);
+        refreshNewImage();
+        invalidate();
+    }
+
+    /**
+     * Keeps the image source, decoded once the view has a size.
+     *
+     * @param resId image resource or 0
+     * @param uri   image uri or null
+     */
+    private void setSampledSource(int resId, Uri uri) {
+        mSampledResource = resId;
+        mSampledUri = uri;
+        mSampledSize = 0;
+        //Do not keep showing the previous image
+        super.setImageDrawable(null);
+        setPreparedImage(null);
+        mPreparedSource = null;
+        cancelSampledDecoding();
+        scheduleSampledDecode();
+    }
+
+    private void clearSampledSource() {
+        cancelSampledDecoding();
+        mSampledResource = 0;
+        mSampledUri = null;
+        mSampledSize = 0;
+    }
+
+    /**
+     * Posts the sampled decode after the current layout pass, sizes of the same pass are coalesced.
+     */
+    private void scheduleSampledDecode() {
+        if (mSampledResource == 0 && mSampledUri == null)
+            return;
+        removeCallbacks(mSampledDecode);
+        post(mSampledDecode);
+    }
+
+    /**
+     * Decodes the image source subsampled to the canvas size, if it's not decoded yet or the
+     * canvas has grown. Posted after layout, so transient layout sizes are never decoded and
+     * nothing is decoded while drawing. The decode runs on the image executor in async mode.
+     */
+    private void decodeSampledImage() {
+        int canvasSize = Math.min(canvasWidth, canvasHeight);
+        if ((mSampledResource == 0 && mSampledUri == null) || canvasSize <= 0 || canvasSize <= mSampledSize)
+            return;
+
+        if (mAsyncImagePreparation) {
+            if (mPendingDecodeTask != null && mPendingDecodeTask.getCanvasSize() == canvasSize)
+                return;
+            cancelSampledDecoding();
+            mPendingDecodeTask = new ImagePreparer.DecodeTask(this, mSampledResource, mSampledUri, canvasSize);
+            ImagePreparer.execute(mImageExecutor, mPendingDecodeTask);
+            return;
+        }
+
+        Bitmap bitmap = mSampledResource != 0 ?
+                SampledBitmapDecoder.decodeResource(getResources(), mSampledResource, canvasSize) :
+                SampledBitmapDecoder.decodeUri(getContext().getContentResolver(), mSampledUri, canvasSize);
+        setSampledImage(bitmap, canvasSize);
+    }
+
+    /**
+     * Called on the UI thread when a decode request finishes.
+     *
+     * @param task   finished request
+     * @param bitmap decoded image or null if it's not a bitmap
+     */
+    void onSampledImageDecoded(ImagePreparer.DecodeTask task, Bitmap bitmap) {
+        if (task != mPendingDecodeTask)
+            return;
+
+        mPendingDecodeTask = null;
+        setSampledImage(bitmap, task.getCanvasSize());
+    }
+
+    /**
+     * Called on the UI thread when the pending decode request has been dropped from a full queue.
+     *
+     * @param task dropped request
+     */
+    void onSampledDecodeDiscarded(ImagePreparer.DecodeTask task) {
+        if (task != mPendingDecodeTask)
+            return;
+
+        mPendingDecodeTask = null;
+        scheduleSampledDecode();
+    }
+
+    private void cancelSampledDecoding() {
+        removeCallbacks(mSampledDecode);
+        if (mPendingDecodeTask != null) {
+            mPendingDecodeTask.cancel();
+            mPendingDecodeTask = null;
+        }
+    }
+
+    /**
+     * Sets a decoded image, or lets ImageView load the source if it could not be decoded.
+     *
+     * @param bitmap     decoded image or null
+     * @param canvasSize decoded size
+     */
+    private void setSampledImage(Bitmap bitmap, int canvasSize) {
+        PolygonMetricsListener metrics = getMetricsListener();
+        if (metrics != null && bitmap != null)
+            metrics.onBitmapAllocated(this, bitmap.getWidth(), bitmap.getHeight());
+
+        Object cacheKey = mImageCacheKey;
+        mDecodingSampledImage = true;
+        try {
+            if (bitmap != null) {
+                mSampledSize = canvasSize;
+                mNextImageCacheKey = cacheKey;
+                super.setImageBitmap(bitmap);
+            } else {
+                //Not a bitmap, i.e. a xml drawable, let ImageView load it
+                int resId = mSampledResource;
+                Uri uri = mSampledUri;
+                clearSampledSource();
+                if (resId != 0)
+                    super.setImageResource(resId);
+                else
+                    super.setImageURI(uri);
+                refreshNewImage();
+            }
+        } finally {
+            mDecodingSampledImage = false;
+        }
+        invalidate();
+    }
+
+    /**
+     * Decodes resources and uris subsampled to the view size, deferred until the view is sized.
+     * Full size images are never kept in memory.
+     *
+     * @param sampledDecoding true to decode subsampled images
+     */
+    public void setSampledDecoding(boolean sampledDecoding) {
+        mSampledDecoding = sampledDecoding;
+    }
+
+    /**
+     * Indicates if resources and uris are decoded subsampled.
+     *
+     * @return boolean
+     */
+    public boolean isSampledDecoding() {
+        return mSampledDecoding;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+        invalidate();
+    }
+
+    public void setColorFilterWithBorder(ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+        mBorderPaint.setColorFilter(cf);
+        invalidate();
+    }
+
+    /**
+     * Refresh image set by the caller. Never skipped, the same bitmap could have been drawn in place.
+     */
+    private void refreshNewImage() {
+        mRequestedSource = null;
+        refreshImage();
+    }
+
+    /**
+     * Refresh image with new canvas size or new image.
+     */
+    private void refreshImage() {
+        mDirtyFlags &= ~DIRTY_IMAGE;
+        PolygonMetricsListener metrics = getMetricsListener();
+        if (metrics == null) {
+            updateImage(null);
+            return;
+        }
+
+        long start = System.nanoTime();
+        if (updateImage(metrics))
+            metrics.onImageRefreshed(this, System.nanoTime() - start);
+        else
+            metrics.onImageRefreshSkipped(this);
+    }
+
+    /**
+     * Updates the image shader, or requests it in async mode.
+     *
+     * @param metrics metrics listener, may be null
+     * @return false if the image was already up to date
+     */
+    private boolean updateImage(PolygonMetricsListener metrics) {
+        int canvasSize = Math.min(canvasWidth, canvasHeight);
+        Drawable drawable = getDrawable();
+        if (canvasSize <= 0 || drawable == null)
+            return true;
+
+        Object source = getImageSource(drawable);
+        Object cacheKey = mThumbnailCacheEnabled ? getImageCacheKey() : null;
+        if (isImageRequested(source, canvasSize, cacheKey))
+            return false;
+
+        //Same image, only the crop matrix changes
+        if (mCropMode == CROP_MODE_SHADER_MATRIX && mImage != null && mImage.isMatrixCrop() &&
+                source == mPreparedSource && mPendingImageTask == null) {
+            updateShaderMatrix();
+            setRequestedImage(source, canvasSize, cacheKey);
+            return true;
+        }
+
+        if (mAsyncImagePreparation) {
+            prepareImageAsync(drawable, source, canvasSize, cacheKey);
+            setRequestedImage(source, canvasSize, cacheKey);
+            return true;
+        }
+
+        cancelImagePreparation();
+        PreparedImage image = createImage(drawable, canvasSize, cacheKey, mCropMode, this, metrics);
+        if (image != null) {
+            setPreparedImage(image);
+            mPreparedSource = source;
+            setRequestedImage(source, canvasSize, cacheKey);
+        }
+        return true;
+    }
+
+    /**
+     * Identity of an image, bitmap drawables can be reused with another bitmap.
+     *
+     * @param drawable image
+     * @return the bitmap of a bitmap drawable, else the drawable
+     */
+    private static Object getImageSource(Drawable drawable) {
+        if (drawable instanceof BitmapDrawable && ((BitmapDrawable) drawable).getBitmap() != null)
+            return ((BitmapDrawable) drawable).getBitmap();
+        return drawable;
+    }
+
+    /**
+     * Indicates if the image is already set or on its way with the same source, size, crop mode and key.
+     *
+     * @param source     source bitmap, or drawable if it's not a bitmap
+     * @param canvasSize thumbnail size
+     * @param cacheKey   thumbnail cache key or null
+     * @return boolean
+     */
+    private boolean isImageRequested(Object source, int canvasSize, Object cacheKey) {
+        if (source != mRequestedSource || canvasSize != mRequestedSize || mCropMode != mRequestedCropMode ||
+                (cacheKey == null ? mRequestedCacheKey != null : !cacheKey.equals(mRequestedCacheKey)))
+            return false;
+        //a pending request is only valid while it's still async
+        return mPendingImageTask != null ? mAsyncImagePreparation : mImage != null;
+    }
+
+    private void setRequestedImage(Object source, int canvasSize, Object cacheKey) {
+        mRequestedSource = source;
+        mRequestedSize = canvasSize;
+        mRequestedCropMode = mCropMode;
+        mRequestedCacheKey = cacheKey;
+    }
+
+    /**
+     * Sets the image shader, the previous image is released.
+     *
+     * @param image new image, null to clear it
+     */
+    private void setPreparedImage(PreparedImage image) {
+        setPreparedImage(image, true);
+    }
+
+    /**
+     * Sets the image shader.
+     *
+     * @param image   new image, null to clear it
+     * @param recycle true to give the previous owned bitmap back to the pool
+     */
+    private void setPreparedImage(PreparedImage image, boolean recycle) {
+        //The upright image counter-rotates the shader, never touch a shared one
+        if (image != null && image.isSharedShader() && mRotationMode == ROTATION_MODE_CANVAS && mUprightImage)
+            image = image.withPrivateShader();
+        PreparedImage previous = mImage;
+        mImage = image;
+        if (image == null)
+            mRequestedSource = null;
+        mPaint.setShader(image != null ? image.getShader() : null);
+        updateShaderMatrix();
+        //pooled bitmaps could still be drawn by the last display list, see onDraw
+        if (recycle && previous != null && previous != image)
+            mRetiredImages.add(previous);
+    }
+
+    /**
+     * Center crops the uncropped image into the canvas through the shader matrix, and
+     * counter-rotates it to keep it upright when the canvas is rotated.
+     */
+    private void updateShaderMatrix() {
+        if (mImage == null || mImage.isSharedShader())
+            return;
+
+        if (mImage.isMatrixCrop()) {
+            Bitmap bitmap = mImage.getBitmap();
+            setCenterCrop(mShaderMatrix, bitmap.getWidth(), bitmap.getHeight(), Math.min(canvasWidth, canvasHeight));
+        } else {
+            mShaderMatrix.reset();
+        }
+        if (mRotationMode == ROTATION_MODE_CANVAS && mUprightImage && mCanvasRotation != 0)
+            mShaderMatrix.postRotate(-mCanvasRotation, mPolygonShapeSpec.getCenterX(), mPolygonShapeSpec.getCenterY());
+        mImage.getShader().setLocalMatrix(mShaderMatrix);
+    }
+
+    /**
+     * Scales and centers an image to cover a square.
+     *
+     * @param matrix matrix to set
+     * @param width  image width
+     * @param height image height
+     * @param size   square size
+     */
+    static void setCenterCrop(Matrix matrix, int width, int height, int size) {
+        float scale = Math.max((float) size / width, (float) size / height);
+        matrix.setScale(scale, scale);
+        matrix.postTranslate((size - width * scale) / 2f, (size - height * scale) / 2f);
+    }
+
+    /**
+     * Selects how the image is cropped into the polygon.
+     *
+     * @param cropMode {@link #CROP_MODE_THUMBNAIL} or {@link #CROP_MODE_SHADER_MATRIX}
+     */
+    public void setCropMode(int cropMode) {
+        if (cropMode != CROP_MODE_THUMBNAIL && cropMode != CROP_MODE_SHADER_MATRIX)
+            throw new IllegalArgumentException("Unknown crop mode: " + cropMode);
+        if (mCropMode == cropMode)
+            return;
+
+        mCropMode = cropMode;
+        refreshImage();
+        invalidate();
+    }
+
+    /**
+     * Returns the crop mode.
+     *
+     * @return {@link #CROP_MODE_THUMBNAIL} or {@link #CROP_MODE_SHADER_MATRIX}
+     */
+    public int getCropMode() {
+        return mCropMode;
+    }
+
+    /**
+     * Creates the image shader, safe to call from any thread if the drawable is not shared.
+     *
+     * @param drawable   source image
+     * @param canvasSize thumbnail size
+     * @param cacheKey   thumbnail cache key, null to skip the cache
+     * @param cropMode   crop mode
+     * @param view       view to report, may be null
+     * @param metrics    metrics listener, may be null
+     * @return new image or null
+     */
+    static PreparedImage createImage(Drawable drawable, int canvasSize, Object cacheKey, int cropMode,
+                                     PolygonImageView view, PolygonMetricsListener metrics) {
+        if (view == null)
+            metrics = null;
+        if (cacheKey != null && cropMode != CROP_MODE_SHADER_MATRIX) {
+            ThumbnailCache.Entry entry = ThumbnailCache.getInstance().get(cacheKey, canvasSize);
+            if (entry != null)
+                return PreparedImage.fromCache(entry);
+        }
+
+        long start = metrics != null ? System.nanoTime() : 0;
+        PreparedImage image = createShader(drawable, canvasSize, cacheKey, cropMode, view, metrics);
+        if (metrics != null && image != null)
+            metrics.onShaderRebuilt(view, System.nanoTime() - start);
+        return image;
+    }
+
+    /**
+     * Creates a new image shader, the thumbnail cache has already been checked.
+     */
+    private static PreparedImage createShader(Drawable drawable, int canvasSize, Object cacheKey, int cropMode,
+                                              PolygonImageView view, PolygonMetricsListener metrics) {
+        if (cropMode == CROP_MODE_SHADER_MATRIX) {
+            Bitmap image = drawableToBitmap(drawable, view, metrics);
+            if (image == null)
+                return null;
+            return new PreparedImage(new BitmapShader(image, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP),
+                    image, !(drawable instanceof BitmapDrawable), true);
+        }
+
+        Bitmap image = drawableToBitmap(drawable, view, metrics);
+        if (image == null)
+            return null;
+
+        //Preserve image ratio if it is not square
+        Bitmap thumbnail = extractThumbnail(image, canvasSize);
+        if (metrics != null && thumbnail != null)
+            metrics.onBitmapAllocated(view, canvasSize, canvasSize);
+        //rasterized drawables are not needed anymore
+        if (!(drawable instanceof BitmapDrawable))
+            BitmapPool.getInstance().put(image);
+        if (thumbnail == null)
+            return null;
+
+        if (cacheKey != null) {
+            ThumbnailCache.Entry entry = ThumbnailCache.getInstance().put(cacheKey, canvasSize, thumbnail);
+            return PreparedImage.fromCache(entry);
+        }
+
+        return new PreparedImage(new BitmapShader(thumbnail, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP),
+                thumbnail, true);
+    }
+
+    /**
+     * Center crops an image into a pooled square bitmap, like ThumbnailUtils.extractThumbnail.
+     *
+     * @param image source image
+     * @param size  thumbnail size
+     * @return thumbnail or null
+     */
+    static Bitmap extractThumbnail(Bitmap image, int size) {
+        Bitmap thumbnail;
+        try {
+            thumbnail = BitmapPool.getInstance().get(size, size, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            Log.e("PolygonImageView", "OutOfMemory during thumbnail creation");
+            return null;
+        }
+
+        Matrix matrix = new Matrix();
+        setCenterCrop(matrix, image.getWidth(), image.getHeight(), size);
 
-        if (Math.min(canvasWidth, canvasHeight) != Math.min(oldW, oldH)) {
-            refreshImage();
-        }
+        Canvas canvas = new Canvas(thumbnail);
+        canvas.drawBitmap(image, matrix, new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG));
+        return thumbnail;
     }
 
     /**
-     * Force Override to solve bug on Lollipop
+     * Prepares the image on the image executor, the previous request is cancelled.
      *
-     * @param widthMeasureSpec  Width Spec Measure
-     * @param heightMeasureSpec Height Spec Measure
+     * @param drawable   source image
+     * @param source     source identity, see {@link #getImageSource(Drawable)}
+     * @param canvasSize thumbnail size
+     * @param cacheKey   thumbnail cache key or null
      */
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        int width = measureWidth(widthMeasureSpec);
-        int height = measureHeight(heightMeasureSpec);
-        setMeasuredDimension(width, height);
-    }
+    private void prepareImageAsync(Drawable drawable, Object source, int canvasSize, Object cacheKey) {
+        cancelImagePreparation();
+        if (source != mPreparedSource) {
+            //Do not show the previous image of a recycled view
+            setPreparedImage(null);
+            mPreparedSource = null;
+        }
 
-    private int measureWidth(int measureSpecWidth) {
-        return measure(measureSpecWidth);
+        mPendingImageTask = new ImagePreparer.Task(this, drawable, canvasSize, cacheKey, mCropMode);
+        ImagePreparer.execute(mImageExecutor, mPendingImageTask);
     }
 
-    private int measureHeight(int measureSpecHeight) {
-        //Force do not square measure to solve bug (use base 2 better performance)
-        return (measure(measureSpecHeight) + 2);
+    /**
+     * Cancels the pending image request, if any.
+     */
+    private void cancelImagePreparation() {
+        if (mPendingImageTask != null) {
+            mPendingImageTask.cancel();
+            mPendingImageTask = null;
+            //the requested image will never come
+            mRequestedSource = null;
+        }
     }
 
-    private int measure(int measureSpec) {
-        int result;
-        int specMode = MeasureSpec.getMode(measureSpec);
-        int specSize = MeasureSpec.getSize(measureSpec);
+    /**
+     * Called on the UI thread when an image request finishes.
+     *
+     * @param task  finished request
+     * @param image new image or null
+     */
+    void onImagePrepared(ImagePreparer.Task task, PreparedImage image) {
+        //A newer request is running
+        if (task != mPendingImageTask) {
+            if (image != null)
+                image.release();
+            return;
+        }
 
-        if (specMode == MeasureSpec.EXACTLY || specMode == MeasureSpec.AT_MOST) {
-            result = specSize;
+        mPendingImageTask = null;
+        if (image != null) {
+            setPreparedImage(image);
+            //the requested source is the one of the pending task
+            mPreparedSource = mRequestedSource;
         } else {
-            result = Math.min(canvasWidth, canvasHeight);
+            mRequestedSource = null;
         }
-
-        return result;
+        invalidate();
     }
 
     /**
-     * Draw the polygon form.
+     * Called on the UI thread when the pending image request has been dropped from a full queue.
      *
-     * @param canvas main canvas
+     * @param task dropped request
      */
-    @Override
-    protected void onDraw(@NonNull Canvas canvas) {
-        if (getDrawable() == null || getDrawable().getIntrinsicWidth() == 0 ||
-                getDrawable().getIntrinsicHeight() == 0)
+    void onImageDiscarded(ImagePreparer.Task task) {
+        if (task != mPendingImageTask)
             return;
 
-        switch (mPolygonShapeSpec.getNumVertex()) {
-            case 0: //CIRCLE
-                if (mPolygonShapeSpec.hasShadow() || mPolygonShapeSpec.hasBorder()) {
-                    canvas.drawCircle(mPolygonShapeSpec.getCenterX(), mPolygonShapeSpec.getCenterY(),
-                            mPolygonShapeSpec.getDiameter() / 2, mBorderPaint);
-                }
-                canvas.drawCircle(mPolygonShapeSpec.getCenterX(), mPolygonShapeSpec.getCenterY(),
-                        mPolygonShapeSpec.getDiameter() / 2, mPaint);
-                break;
-            case 1: //REGULAR IMAGE VIEW
-                super.onDraw(canvas);
-                break;
-            case 2: //SQUARE
-                if (mPolygonShapeSpec.hasShadow() || mPolygonShapeSpec.hasBorder()) {
-                    canvas.drawRect(mPolygonShapeSpec.getCenterX() - mPolygonShapeSpec.getDiameter() / 2,
-                        mPolygonShapeSpec.getCenterY() - mPolygonShapeSpec.getDiameter() / 2,
-                        mPolygonShapeSpec.getCenterX() + mPolygonShapeSpec.getDiameter() / 2,
-                        mPolygonShapeSpec.getCenterY() + mPolygonShapeSpec.getDiameter() / 2,
-                        mBorderPaint);
-                }
-                canvas.drawRect(mPolygonShapeSpec.getCenterX() - mPolygonShapeSpec.getDiameter() / 2,
-                    mPolygonShapeSpec.getCenterY() - mPolygonShapeSpec.getDiameter() / 2,
-                    mPolygonShapeSpec.getCenterX() + mPolygonShapeSpec.getDiameter() / 2,
-                    mPolygonShapeSpec.getCenterY() + mPolygonShapeSpec.getDiameter() / 2,
-                    mPaint);
-                break;
-            default: //POLYGON
-                if (mPolygonShapeSpec.hasShadow() || mPolygonShapeSpec.hasBorder())
-                    canvas.drawPath(mPath, mBorderPaint);
-                canvas.drawPath(mPath, mPaint);
+        mPendingImageTask = null;
+        mRequestedSource = null;
+        scheduleUpdate(DIRTY_IMAGE);
+    }
+
+    /**
+     * Prepares images off the UI thread. Stale requests of recycled views are cancelled.
+     *
+     * @param async true to prepare images on the image executor
+     */
+    public void setAsyncImagePreparation(boolean async) {
+        mAsyncImagePreparation = async;
+        if (!async && mPendingImageTask != null) {
+            refreshImage();
+            invalidate();
         }
     }
 
     /**
-     * Take cares about padding changes.
+     * Indicates if images are prepared off the UI thread.
      *
-     * @param start  start
-     * @param top    top
-     * @param end    end
-     * @param bottom bottom
+     * @return boolean
      */
-    @TargetApi(17)
-    @Override
-    public void setPaddingRelative(int start, int top, int end, int bottom) {
-        super.setPaddingRelative(start, top, end, bottom);
-        updatePolygonSize();
-        invalidate();
+    public boolean isAsyncImagePreparation() {
+        return mAsyncImagePreparation;
     }
 
     /**
-     * Take cares about padding changes.
+     * Sets the executor used by this view in async mode.
      *
-     * @param left   left
-     * @param top    top
-     * @param right  right
-     * @param bottom bottom
+     * @param executor executor, null to use the default one
      */
-    @Override
-    public void setPadding(int left, int top, int right, int bottom) {
-        super.setPadding(left, top, right, bottom);
-        updatePolygonSize(left, top, right, bottom);
-        invalidate(left, top, right, bottom);
+    public void setImageExecutor(Executor executor) {
+        mImageExecutor = executor;
     }
 
     /**
-     * Update image.
+     * Sets the executor shared by every view in async mode, i.e. a direct executor for tests.
      *
-     * @param bm new image.
+     * @param executor executor, null to restore the default bounded pool
      */
-    @Override
-    public void setImageBitmap(Bitmap bm) {
-        super.setImageBitmap(bm);
-        refreshImage();
-        invalidate();
+    public static void setDefaultImageExecutor(Executor executor) {
+        ImagePreparer.setDefaultExecutor(executor);
     }
 
     /**
-     * Update image.
+     * Sets the metrics listener of this view, it overrides the global one.
      *
-     * @param drawable new image.
+     * @param listener listener, null to use the global one
      */
-    @Override
-    public void setImageDrawable(Drawable drawable) {
-        super.setImageDrawable(drawable);
-        refreshImage();
-        invalidate();
+    public void setMetricsListener(PolygonMetricsListener listener) {
+        mMetricsListener = listener;
     }
 
     /**
-     * Update image.
+     * Gets the metrics listener used by this view.
      *
-     * @param resId new image.
+     * @return view listener, else the global one, may be null
      */
-    @Override
-    public void setImageResource(@DrawableRes int resId) {
-        super.setImageResource(resId);
-        refreshImage();
-        invalidate();
+    public PolygonMetricsListener getMetricsListener() {
+        return mMetricsListener != null ? mMetricsListener : sGlobalMetricsListener;
     }
 
     /**
-     * Update image.
+     * Sets the metrics listener of every view without its own listener.
      *
-     * @param uri new image.
+     * @param listener listener, null to stop measuring
      */
-    @Override
-    public void setImageURI(Uri uri) {
-        super.setImageURI(uri);
+    public static void setGlobalMetricsListener(PolygonMetricsListener listener) {
+        sGlobalMetricsListener = listener;
+    }
+
+    /**
+     * Key of the current image, the caller key or the source image identity.
+     *
+     * @return cache key
+     */
+    private Object getImageCacheKey() {
+        if (mImageCacheKey != null)
+            return mImageCacheKey;
+
+        return getImageSource(getDrawable());
+    }
+
+    /**
+     * A new image is coming, the pending key becomes the current one.
+     */
+    private void takeImageCacheKey() {
+        mImageCacheKey = mNextImageCacheKey;
+        mNextImageCacheKey = null;
+    }
+
+    /**
+     * Enables the process-wide thumbnail cache, useful when the same images are bound to many views.
+     *
+     * @param enabled true to share thumbnails through {@link ThumbnailCache}
+     */
+    public void setThumbnailCacheEnabled(boolean enabled) {
+        if (mThumbnailCacheEnabled == enabled)
+            return;
+
+        mThumbnailCacheEnabled = enabled;
         refreshImage();
         invalidate();
     }
 
-    @Override
-    public void setColorFilter(ColorFilter cf) {
-        mPaint.setColorFilter(cf);
-        invalidate();
+    /**
+     * Indicates if the thumbnail cache is used.
+     *
+     * @return boolean
+     */
+    public boolean isThumbnailCacheEnabled() {
+        return mThumbnailCacheEnabled;
     }
 
-    public void setColorFilterWithBorder(ColorFilter cf) {
-        mPaint.setColorFilter(cf);
-        mBorderPaint.setColorFilter(cf);
+    /**
+     * Marks geometry or the image to be recomputed before the next draw.
+     *
+     * @param flags {@link #DIRTY_SIZE}, {@link #DIRTY_POLYGON} and/or {@link #DIRTY_IMAGE}
+     */
+    private void scheduleUpdate(int flags) {
+        mDirtyFlags |= flags;
         invalidate();
     }
 
     /**
-     * Refresh image with new canvas size or new image.
+     * Applies the deferred changes. The size goes first, a new diameter already rebuilds
+     * the polygon, and the image goes last.
      */
-    private void refreshImage() {
-        Bitmap image = drawableToBitmap(getDrawable());
-        int canvasSize = Math.min(canvasWidth, canvasHeight);
-        if (canvasSize > 0 && image != null) {
-            //Preserve image ratio if it is not square
-            BitmapShader shader = new BitmapShader(ThumbnailUtils.extractThumbnail(image, canvasSize, canvasSize),
-                    Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-            mPaint.setShader(shader);
-        }
+    private void updatePendingChanges() {
+        if (mDirtyFlags == 0)
+            return;
+
+        float centerX = mPolygonShapeSpec.getCenterX();
+        float centerY = mPolygonShapeSpec.getCenterY();
+        if ((mDirtyFlags & DIRTY_SIZE) != 0)
+            updatePolygonSize();
+        if ((mDirtyFlags & DIRTY_POLYGON) != 0)
+            rebuildPolygon();
+        if ((mDirtyFlags & DIRTY_IMAGE) != 0)
+            refreshImage();
+        //the upright image turns around the center
+        if (centerX != mPolygonShapeSpec.getCenterX() || centerY != mPolygonShapeSpec.getCenterY())
+            updateShaderMatrix();
     }
 
     /**
@@ -342,6 +1426,19 @@ public class PolygonImageView extends ImageView {
      * Rotate vertices with the variable angle.
      */
     private void rebuildPolygon() {
+        mDirtyFlags &= ~DIRTY_POLYGON;
+        PolygonMetricsListener metrics = getMetricsListener();
+        long start = metrics != null ? System.nanoTime() : 0;
+        updatePolygon();
+        updateCornerEffect();
+        if (metrics != null)
+            metrics.onPolygonRebuilt(this, System.nanoTime() - start);
+    }
+
+    /**
+     * Recalculates the center and the polygon path.
+     */
+    private void updatePolygon() {
         //recalculate new center
         float borderNeeded = mPolygonShapeSpec.hasBorder() ? mPolygonShapeSpec.getBorderWidth() : 0;
         float shadowNeeded = mPolygonShapeSpec.hasShadow() ? mPolygonShapeSpec.getShadowRadius() : 0;
@@ -349,11 +1446,194 @@ public class PolygonImageView extends ImageView {
                 getPaddingRight()) / 2 + borderNeeded + shadowNeeded);
         mPolygonShapeSpec.setCenterY(mPolygonShapeSpec.getDiameter() / 2 + (float) (getPaddingTop() +
                 getPaddingBottom()) / 2 + borderNeeded + shadowNeeded);
+        mShadowDirty = true;
+
+        if (mMorphing) {
+            updateMorph();
+        } else if (mPolygonShapeSpec.getNumVertex() >= 3) {
+            mPath = mPolygonShape.getPolygonPath(mPolygonShapeSpec);
+        }
+        updateHitOutline();
+    }
+
+    /**
+     * Keeps the geometry of the last rebuild for hit testing. Built-in shapes give their exact
+     * vertices and flattened curves, other paths are sampled.
+     */
+    private void updateHitOutline() {
+        int numVertex = mPolygonShapeSpec.getNumVertex();
+        mHitNumVertex = numVertex;
+        mHitCenterX = mPolygonShapeSpec.getCenterX();
+        mHitCenterY = mPolygonShapeSpec.getCenterY();
+        mHitRadius = mPolygonShapeSpec.getDiameter() / 2;
+        if (numVertex < 3 || mPath == null)
+            return;
+
+        if (mHitOutline == null)
+            mHitOutline = new HitOutline();
+        if (mMorphing)
+            mHitOutline.set(mMorph, mMorphFraction);
+        else if (!(mPolygonShape instanceof PolygonOutlineShape) ||
+                !mHitOutline.set((PolygonOutlineShape) mPolygonShape, mPolygonShapeSpec))
+            mHitOutline.set(mPath, numVertex * HIT_SAMPLES_PER_VERTEX);
+    }
+
+    /**
+     * Resamples both morph outlines with the current geometry and corner radius.
+     */
+    private void updateMorph() {
+        mMorphSpec.setDiameter(mPolygonShapeSpec.getDiameter());
+        mMorphSpec.setCenterX(mPolygonShapeSpec.getCenterX());
+        mMorphSpec.setCenterY(mPolygonShapeSpec.getCenterY());
+        mMorphSpec.setRotation(mPolygonShapeSpec.getRotation());
+        //the end outline keeps the rounded corners, no jump when the morph ends
+        mMorphSpec.setCornerRadius(mPolygonShapeSpec.getCornerRadius());
+        mMorph.setShapes(mPolygonShape, mPolygonShapeSpec, mMorphShape, mMorphSpec);
+        mPath = mMorph.getPath(mMorphFraction);
+    }
+
+    /**
+     * Starts a morph from the current polygon to a new number of vertices.
+     * Drive it with {@link #setMorphFraction(float)}, i.e. from an ObjectAnimator on "morphFraction".
+     *
+     * @param numVertices end vertices, at least 3
+     */
+    public void morphTo(int numVertices) {
+        morphTo(mPolygonShape, numVertices);
+    }
+
+    /**
+     * Starts a morph from the current polygon to a new shape and number of vertices.
+     * Pre-rendered shadows keep the start outline until the morph ends.
+     *
+     * @param polygonShape end shape
+     * @param numVertices  end vertices, at least 3
+     */
+    public void morphTo(PolygonShape polygonShape, int numVertices) {
+        if (numVertices < 3 || mPolygonShapeSpec.getNumVertex() < 3)
+            throw new IllegalArgumentException("Only polygons with 3 or more vertices can be morphed");
+
+        updatePendingChanges();
+        if (mMorph == null) {
+            mMorph = new PolygonMorph();
+            mMorphSpec = new PolygonShapeSpec();
+        }
+        mMorphShape = polygonShape;
+        mMorphSpec.setNumVertex(numVertices);
+        mMorphFraction = 0f;
+        mMorphing = true;
+        updateMorph();
+        updateHitOutline();
+        invalidate();
+    }
+
+    /**
+     * Moves the running morph, the end shape and vertices are set when it reaches 1.
+     *
+     * @param fraction 0 for the start outline, 1 for the end one
+     */
+    public void setMorphFraction(float fraction) {
+        if (!mMorphing)
+            return;
+
+        mMorphFraction = fraction;
+        if (fraction >= 1f) {
+            mMorphing = false;
+            mPolygonShape = mMorphShape;
+            mPolygonShapeSpec.setNumVertex(mMorphSpec.getNumVertex());
+            mMorphShape = null;
+            rebuildPolygon();
+        } else {
+            mPath = mMorph.getPath(fraction);
+            updateHitOutline();
+        }
+        invalidate();
+    }
+
+    public float getMorphFraction() {
+        return mMorphing ? mMorphFraction : 0f;
+    }
+
+    /**
+     * Indicates if a point is inside the polygon, borders excluded. Tested against the geometry
+     * of the last rebuild, pending changes are not applied and nothing is allocated per call.
+     *
+     * @param x view x
+     * @param y view y
+     * @return true if the point is inside
+     */
+    public boolean contains(float x, float y) {
+        int numVertex = mHitNumVertex;
+        if (numVertex == 1) //REGULAR IMAGE VIEW
+            return x >= 0 && y >= 0 && x < getWidth() && y < getHeight();
+
+        float dX = x - mHitCenterX;
+        float dY = y - mHitCenterY;
+        if (mRotationMode == ROTATION_MODE_CANVAS && mCanvasRotation != 0) {
+            //undo the canvas rotation
+            double angle = Math.toRadians(-mCanvasRotation);
+            float cos = (float) Math.cos(angle);
+            float sin = (float) Math.sin(angle);
+            float rotatedX = dX * cos - dY * sin;
+            dY = dX * sin + dY * cos;
+            dX = rotatedX;
+        }
 
-        if (mPolygonShapeSpec.getNumVertex() < 3)
+        float radius = mHitRadius;
+        switch (numVertex) {
+            case -1: //NOT BUILT YET
+                return false;
+            case 0: //CIRCLE
+                return dX * dX + dY * dY <= radius * radius;
+            case 2: //SQUARE
+                return Math.abs(dX) <= radius && Math.abs(dY) <= radius;
+            default: //POLYGON
+                return mHitOutline != null && mHitOutline.contains(mHitCenterX + dX, mHitCenterY + dY);
+        }
+    }
+
+    /**
+     * Ignores touches starting outside the polygon, they reach the views below.
+     *
+     * @param filtering true to filter touches
+     */
+    public void setTouchFiltering(boolean filtering) {
+        mTouchFiltering = filtering;
+    }
+
+    public boolean isTouchFiltering() {
+        return mTouchFiltering;
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(@NonNull MotionEvent event) {
+        //the whole gesture is dropped when it starts outside
+        if (mTouchFiltering && event.getActionMasked() == MotionEvent.ACTION_DOWN &&
+                !contains(event.getX(), event.getY()))
+            return false;
+        return super.dispatchTouchEvent(event);
+    }
+
+    /**
+     * Indicates if a morph is running.
+     *
+     * @return boolean
+     */
+    public boolean isMorphing() {
+        return mMorphing;
+    }
+
+    /**
+     * Stops the running morph, keeping the start polygon.
+     */
+    public void cancelMorph() {
+        if (!mMorphing)
             return;
 
-        mPath = mPolygonShape.getPolygonPath(mPolygonShapeSpec);
+        mMorphing = false;
+        mMorphShape = null;
+        rebuildPolygon();
+        invalidate();
     }
 
     /**
@@ -375,6 +1655,7 @@ public class PolygonImageView extends ImageView {
         if(mPolygonShapeSpec == null)
             return;
 
+        mDirtyFlags &= ~DIRTY_SIZE;
         float borderPadding = mPolygonShapeSpec.hasBorder() ? mPolygonShapeSpec.getBorderWidth() : 0f;
         float shadowPadding = mPolygonShapeSpec.hasShadow() ? mPolygonShapeSpec.getShadowRadius() : 0f;
         float xPadding = (l + r + (borderPadding * 2) + (shadowPadding * 2));
@@ -392,9 +1673,9 @@ public class PolygonImageView extends ImageView {
      * @param polygonShape set new shape
      */
     public void setPolygonShape(PolygonShape polygonShape) {
+        mMorphing = false;
         mPolygonShape = polygonShape;
-        rebuildPolygon();
-        invalidate();
+        scheduleUpdate(DIRTY_POLYGON);
     }
 
     /**
@@ -427,7 +1708,7 @@ public class PolygonImageView extends ImageView {
      * @return angle in degrees.
      */
     public float getRotationAngle() {
-        return mPolygonShapeSpec.getRotation();
+        return mRotationMode == ROTATION_MODE_CANVAS ? mCanvasRotation : mPolygonShapeSpec.getRotation();
     }
 
     /**
@@ -436,11 +1717,62 @@ public class PolygonImageView extends ImageView {
      * @param mAngle angle in degrees.
      */
     public void setRotationAngle(float mAngle) {
+        if (mRotationMode == ROTATION_MODE_CANVAS) {
+            //Only a matrix update per frame
+            mCanvasRotation = mAngle;
+            if (mUprightImage)
+                updateShaderMatrix();
+            invalidate();
+            return;
+        }
+
         mPolygonShapeSpec.setRotation(mAngle);
-        rebuildPolygon();
+        scheduleUpdate(DIRTY_POLYGON);
+    }
+
+    /**
+     * Selects how the rotation angle is applied.
+     *
+     * @param rotationMode {@link #ROTATION_MODE_PATH} or {@link #ROTATION_MODE_CANVAS}
+     */
+    public void setRotationMode(int rotationMode) {
+        if (rotationMode != ROTATION_MODE_PATH && rotationMode != ROTATION_MODE_CANVAS)
+            throw new IllegalArgumentException("Unknown rotation mode: " + rotationMode);
+        if (rotationMode == mRotationMode)
+            return;
+
+        float angle = getRotationAngle();
+        mRotationMode = rotationMode;
+        if (rotationMode == ROTATION_MODE_CANVAS) {
+            mCanvasRotation = angle;
+            mPolygonShapeSpec.setRotation(0f);
+        } else {
+            mCanvasRotation = 0f;
+            mPolygonShapeSpec.setRotation(angle);
+        }
+        setPreparedImage(mImage);
+        scheduleUpdate(DIRTY_POLYGON);
+    }
+
+    public int getRotationMode() {
+        return mRotationMode;
+    }
+
+    /**
+     * Keeps the image upright while the canvas is rotated, only the polygon turns.
+     *
+     * @param upright true to counter-rotate the image
+     */
+    public void setUprightImage(boolean upright) {
+        mUprightImage = upright;
+        setPreparedImage(mImage);
         invalidate();
     }
 
+    public boolean isUprightImage() {
+        return mUprightImage;
+    }
+
     /**
      * Returns the vertex number.
      *
@@ -456,9 +1788,9 @@ public class PolygonImageView extends ImageView {
      * @param numVertices new number of vertices
      */
     public void setVertices(int numVertices) {
+        mMorphing = false;
         mPolygonShapeSpec.setNumVertex(numVertices);
-        rebuildPolygon();
-        invalidate();
+        scheduleUpdate(DIRTY_POLYGON);
     }
 
     /**
@@ -501,8 +1833,7 @@ public class PolygonImageView extends ImageView {
             mBorderPaint.setStrokeWidth(0);
             mBorderPaint.setColor(0);
         }
-        updatePolygonSize();
-        invalidate();
+        scheduleUpdate(DIRTY_SIZE);
     }
 
     /**
@@ -543,9 +1874,7 @@ public class PolygonImageView extends ImageView {
      */
     public void setCornerRadius(float cornerRadius) {
         mPolygonShapeSpec.setCornerRadius(cornerRadius);
-        mBorderPaint.setPathEffect(new CornerPathEffect(cornerRadius));
-        mPaint.setPathEffect(new CornerPathEffect(cornerRadius));
-        invalidate();
+        scheduleUpdate(DIRTY_POLYGON);
     }
 
     /**
@@ -577,10 +1906,9 @@ public class PolygonImageView extends ImageView {
 
     private void startShadow() {
         mPolygonShapeSpec.setHasShadow(true);
-        mBorderPaint.setShadowLayer(mPolygonShapeSpec.getShadowRadius(), mPolygonShapeSpec.getShadowXOffset(),
-                mPolygonShapeSpec.getShadowYOffset(), mPolygonShapeSpec.getShadowColor());
-        updatePolygonSize();
-        invalidate();
+        updateShadowPaint();
+        updateLayerType();
+        scheduleUpdate(DIRTY_SIZE);
     }
 
     /**
@@ -591,9 +1919,9 @@ public class PolygonImageView extends ImageView {
             return;
 
         mPolygonShapeSpec.setHasShadow(false);
-        mBorderPaint.clearShadowLayer();
-        updatePolygonSize();
-        invalidate();
+        updateShadowPaint();
+        updateLayerType();
+        scheduleUpdate(DIRTY_SIZE);
     }
 
     /**
@@ -602,7 +1930,19 @@ public class PolygonImageView extends ImageView {
      * @param drawable incoming drawable
      * @return new bitmap
      */
-    private static Bitmap drawableToBitmap(Drawable drawable) {
+    static Bitmap drawableToBitmap(Drawable drawable) {
+        return drawableToBitmap(drawable, null, null);
+    }
+
+    /**
+     * Transforms a drawable into a bitmap, reporting the rasterization.
+     *
+     * @param drawable incoming drawable
+     * @param view     view to report, may be null
+     * @param metrics  metrics listener, may be null
+     * @return new bitmap
+     */
+    static Bitmap drawableToBitmap(Drawable drawable, PolygonImageView view, PolygonMetricsListener metrics) {
         if (drawable == null) {
             return null;
         } else if (drawable instanceof BitmapDrawable) {
@@ -615,9 +1955,12 @@ public class PolygonImageView extends ImageView {
         int height = drawable.getIntrinsicHeight();
         height = height > 0 ? height : 1;
 
+        if (view == null)
+            metrics = null;
+        long start = metrics != null ? System.nanoTime() : 0;
         Bitmap bitmap;
         try {
-            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            bitmap = BitmapPool.getInstance().get(width, height, Bitmap.Config.ARGB_8888);
         } catch (OutOfMemoryError e) {
             Log.e("PolygonImageView", "OutOfMemory during bitmap creation");
             return null;
@@ -627,6 +1970,10 @@ public class PolygonImageView extends ImageView {
         drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
         drawable.draw(canvas);
 
+        if (metrics != null) {
+            metrics.onBitmapAllocated(view, width, height);
+            metrics.onDrawableRasterized(view, System.nanoTime() - start);
+        }
         return bitmap;
     }
 }
@@ -0,0 +1,99 @@
+package net.grobas.view;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Rect;
+import android.os.Build;
+
+import net.grobas.shapes.PolygonPathCache;
+
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/**
+ * Shrinks the shared caches and releases the images of hidden views on memory pressure.
+ * Registered once on the application context by the first view, from Ice Cream Sandwich.
+ * Released views rebuild their image on the next draw.
+ */
+@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+final class PolygonMemoryTrimmer implements ComponentCallbacks2 {
+
+    private static PolygonMemoryTrimmer sInstance;
+
+    //live views, weakly referenced
+    private final WeakHashMap<PolygonImageView, Boolean> mViews = new WeakHashMap<PolygonImageView, Boolean>();
+    private final Rect mVisibleRect = new Rect();
+
+    private PolygonMemoryTrimmer() {
+    }
+
+    /**
+     * Tracks a view, the callbacks are registered with the first one.
+     *
+     * @param view new view
+     */
+    static synchronized void register(PolygonImageView view) {
+        if (sInstance == null) {
+            sInstance = new PolygonMemoryTrimmer();
+            Context context = view.getContext().getApplicationContext();
+            if (context == null)
+                context = view.getContext();
+            context.registerComponentCallbacks(sInstance);
+        }
+        sInstance.mViews.put(view, Boolean.TRUE);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        //released thumbnails go back to the pool, trim it afterwards
+        trimViews(level);
+
+        BitmapPool pool = BitmapPool.getInstance();
+        ThumbnailCache thumbnails = ThumbnailCache.getInstance();
+        ShadowCache shadows = ShadowCache.getInstance();
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            //next in the kill list or the system is about to kill us
+            pool.clear();
+            thumbnails.clear();
+            shadows.clear();
+            PolygonPathCache.clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            pool.clear();
+            thumbnails.trimToSize(thumbnails.getSize() / 2);
+            shadows.trimToSize(shadows.getSize() / 2);
+        } else {
+            pool.trimToSize(pool.getSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * Releases detached views, plus the ones not on screen from the low level, plus every
+     * view once the UI is hidden.
+     *
+     * @param level trim level
+     */
+    private void trimViews(int level) {
+        ArrayList<PolygonImageView> views;
+        synchronized (PolygonMemoryTrimmer.class) {
+            views = new ArrayList<PolygonImageView>(mViews.keySet());
+        }
+
+        for (PolygonImageView view : views) {
+            boolean hidden = view.getWindowToken() == null || level >= TRIM_MEMORY_UI_HIDDEN ||
+                    (level >= TRIM_MEMORY_RUNNING_LOW && (!view.isShown() || !view.getGlobalVisibleRect(mVisibleRect)));
+            if (hidden)
+                view.trimMemory();
+        }
+    }
+}
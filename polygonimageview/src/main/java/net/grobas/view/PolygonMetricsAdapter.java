@@ -0,0 +1,35 @@
+package net.grobas.view;
+
+/**
+ * Empty {@link PolygonMetricsListener}, override only the needed callbacks.
+ */
+public abstract class PolygonMetricsAdapter implements PolygonMetricsListener {
+
+    @Override
+    public void onDraw(PolygonImageView view, long durationNanos) {
+    }
+
+    @Override
+    public void onPolygonRebuilt(PolygonImageView view, long durationNanos) {
+    }
+
+    @Override
+    public void onImageRefreshed(PolygonImageView view, long durationNanos) {
+    }
+
+    @Override
+    public void onImageRefreshSkipped(PolygonImageView view) {
+    }
+
+    @Override
+    public void onShaderRebuilt(PolygonImageView view, long durationNanos) {
+    }
+
+    @Override
+    public void onDrawableRasterized(PolygonImageView view, long durationNanos) {
+    }
+
+    @Override
+    public void onBitmapAllocated(PolygonImageView view, int width, int height) {
+    }
+}
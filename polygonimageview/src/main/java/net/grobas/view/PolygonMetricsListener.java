@@ -0,0 +1,69 @@
+package net.grobas.view;
+
+/**
+ * Receives PolygonImageView timings and counts. Durations are in nanoseconds.
+ * Image callbacks could be called from the image executor threads in async mode.
+ * Nothing is measured while no listener is set.
+ *
+ * @see PolygonImageView#setMetricsListener(PolygonMetricsListener)
+ * @see PolygonImageView#setGlobalMetricsListener(PolygonMetricsListener)
+ */
+public interface PolygonMetricsListener {
+
+    /**
+     * A view has been drawn.
+     *
+     * @param view          drawn view
+     * @param durationNanos onDraw duration
+     */
+    void onDraw(PolygonImageView view, long durationNanos);
+
+    /**
+     * The polygon path has been rebuilt after a geometry change.
+     *
+     * @param view          view
+     * @param durationNanos rebuild duration
+     */
+    void onPolygonRebuilt(PolygonImageView view, long durationNanos);
+
+    /**
+     * The image has been refreshed after a size or image change, on the UI thread.
+     *
+     * @param view          view
+     * @param durationNanos refresh duration, without async work
+     */
+    void onImageRefreshed(PolygonImageView view, long durationNanos);
+
+    /**
+     * An image refresh has been skipped, the same source, size, crop mode and cache key
+     * were already set or on their way.
+     *
+     * @param view view
+     */
+    void onImageRefreshSkipped(PolygonImageView view);
+
+    /**
+     * A new image shader has been created, not taken from the thumbnail cache.
+     *
+     * @param view          view
+     * @param durationNanos creation duration, rasterization and crop included
+     */
+    void onShaderRebuilt(PolygonImageView view, long durationNanos);
+
+    /**
+     * A non bitmap drawable has been rasterized.
+     *
+     * @param view          view
+     * @param durationNanos rasterization duration
+     */
+    void onDrawableRasterized(PolygonImageView view, long durationNanos);
+
+    /**
+     * A bitmap has been requested for a rasterization, thumbnail, shadow or decoded image.
+     *
+     * @param view   view
+     * @param width  bitmap width
+     * @param height bitmap height
+     */
+    void onBitmapAllocated(PolygonImageView view, int width, int height);
+}
@@ -0,0 +1,110 @@
+package net.grobas.view;
+
+import android.graphics.Path;
+import android.graphics.PathMeasure;
+
+import net.grobas.shapes.PolygonShape;
+import net.grobas.shapes.PolygonShapeSpec;
+
+/**
+ * Interpolates between two polygon outlines. Both outlines are resampled to the same number
+ * of points, equally spaced along them, and each frame is a lerp into a reused path.
+ * Nothing is allocated per frame.
+ */
+public class PolygonMorph {
+
+    //divisible by 3, 4, 5, 6 and 8, so those vertices are exact samples
+    public static final int DEFAULT_POINT_COUNT = 120;
+
+    private final int mPointCount;
+    private final float[] mFrom;
+    private final float[] mTo;
+    private final float[] mPos = new float[2];
+    private final PathMeasure mPathMeasure = new PathMeasure();
+    private final Path mPath = new Path();
+    private float mFraction = -1;
+
+    public PolygonMorph() {
+        this(DEFAULT_POINT_COUNT);
+    }
+
+    /**
+     * @param pointCount samples of each outline
+     */
+    public PolygonMorph(int pointCount) {
+        if (pointCount < 3)
+            throw new IllegalArgumentException("At least 3 points are needed");
+        mPointCount = pointCount;
+        mFrom = new float[pointCount * 2];
+        mTo = new float[pointCount * 2];
+    }
+
+    /**
+     * Resamples both outlines, call it again when any of them changes.
+     *
+     * @param from     start shape
+     * @param fromSpec start specs
+     * @param to       end shape
+     * @param toSpec   end specs
+     */
+    public void setShapes(PolygonShape from, PolygonShapeSpec fromSpec, PolygonShape to, PolygonShapeSpec toSpec) {
+        resample(from.getPolygonPath(fromSpec), mFrom);
+        resample(to.getPolygonPath(toSpec), mTo);
+        mFraction = -1;
+    }
+
+    /**
+     * Samples a closed path with equally spaced points, starting at its first point.
+     *
+     * @param path   closed path
+     * @param points x and y pairs
+     */
+    private void resample(Path path, float[] points) {
+        mPathMeasure.setPath(path, true);
+        float step = mPathMeasure.getLength() / mPointCount;
+        for (int i = 0; i < mPointCount; i++) {
+            mPathMeasure.getPosTan(i * step, mPos, null);
+            points[i * 2] = mPos[0];
+            points[i * 2 + 1] = mPos[1];
+        }
+    }
+
+    /**
+     * Returns the outline at a point of the morph. The path is reused by the next call.
+     *
+     * @param fraction 0 for the start shape, 1 for the end one
+     * @return interpolated path
+     */
+    public Path getPath(float fraction) {
+        if (fraction == mFraction)
+            return mPath;
+
+        mFraction = fraction;
+        mPath.rewind();
+        for (int i = 0; i < mPointCount * 2; i += 2) {
+            float x = mFrom[i] + (mTo[i] - mFrom[i]) * fraction;
+            float y = mFrom[i + 1] + (mTo[i + 1] - mFrom[i + 1]) * fraction;
+            if (i == 0)
+                mPath.moveTo(x, y);
+            else
+                mPath.lineTo(x, y);
+        }
+        mPath.close();
+        return mPath;
+    }
+
+    /**
+     * Fills the outline points at a point of the morph.
+     *
+     * @param fraction 0 for the start shape, 1 for the end one
+     * @param out      receives x and y pairs, at least twice the point count
+     */
+    void getPoints(float fraction, float[] out) {
+        for (int i = 0; i < mPointCount * 2; i++)
+            out[i] = mFrom[i] + (mTo[i] - mFrom[i]) * fraction;
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+}
@@ -0,0 +1,82 @@
+package net.grobas.view;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Shader;
+
+/**
+ * Image shader of a view and the bitmap behind it.
+ */
+final class PreparedImage {
+
+    private final BitmapShader mShader;
+    private final Bitmap mBitmap;
+    //owned bitmaps go back to the pool when released
+    private final boolean mOwned;
+    //uncropped bitmap, cropped by the shader local matrix
+    private final boolean mMatrixCrop;
+    //thumbnail cache shader, its local matrix must not change
+    private final boolean mSharedShader;
+
+    PreparedImage(BitmapShader shader, Bitmap bitmap, boolean owned) {
+        this(shader, bitmap, owned, false, false);
+    }
+
+    PreparedImage(BitmapShader shader, Bitmap bitmap, boolean owned, boolean matrixCrop) {
+        this(shader, bitmap, owned, matrixCrop, false);
+    }
+
+    private PreparedImage(BitmapShader shader, Bitmap bitmap, boolean owned, boolean matrixCrop,
+                          boolean sharedShader) {
+        mShader = shader;
+        mBitmap = bitmap;
+        mOwned = owned;
+        mMatrixCrop = matrixCrop;
+        mSharedShader = sharedShader;
+    }
+
+    /**
+     * Image of a cached thumbnail, the shader is shared.
+     *
+     * @param entry cache entry
+     * @return new image
+     */
+    static PreparedImage fromCache(ThumbnailCache.Entry entry) {
+        return new PreparedImage(entry.getShader(), entry.getThumbnail(), false, false, true);
+    }
+
+    /**
+     * Same image with its own shader, needed to change the local matrix of a shared one.
+     * The bitmap ownership is kept.
+     *
+     * @return new image
+     */
+    PreparedImage withPrivateShader() {
+        return new PreparedImage(new BitmapShader(mBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP),
+                mBitmap, mOwned, mMatrixCrop, false);
+    }
+
+    BitmapShader getShader() {
+        return mShader;
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    boolean isMatrixCrop() {
+        return mMatrixCrop;
+    }
+
+    boolean isSharedShader() {
+        return mSharedShader;
+    }
+
+    /**
+     * Gives the bitmap back to the pool if nobody else uses it.
+     */
+    void release() {
+        if (mOwned)
+            BitmapPool.getInstance().put(mBitmap);
+    }
+}
@@ -0,0 +1,60 @@
+package net.grobas.view;
+
+import android.graphics.Bitmap;
+
+import net.grobas.shapes.PolygonGeometryKey;
+
+/**
+ * Process-wide cache of pre-rendered alpha-only shadow bitmaps, evicted by byte count.
+ * Views tint the bitmaps with their shadow color, so one blur is shared by every view
+ * with the same shape, size, corner radius and shadow radius.
+ */
+public class ShadowCache extends BitmapMemoryCache<PolygonGeometryKey, Bitmap> {
+
+    //1/32 of the heap by default
+    private static final int DEFAULT_MEMORY_DIVIDER = 32;
+
+    private static ShadowCache sInstance;
+
+    /**
+     * Returns the shared cache.
+     *
+     * @return shared instance
+     */
+    public static synchronized ShadowCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new ShadowCache(getDefaultMaxBytes(DEFAULT_MEMORY_DIVIDER));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxBytes max cache size in bytes
+     */
+    public ShadowCache(int maxBytes) {
+        super(maxBytes);
+    }
+
+    @Override
+    int getByteCount(Bitmap value) {
+        return value.getRowBytes() * value.getHeight();
+    }
+
+    /**
+     * @param key shadow key
+     * @return cached shadow or null
+     */
+    public Bitmap get(PolygonGeometryKey key) {
+        return mCache.get(key);
+    }
+
+    /**
+     * Caches a shadow. Cached bitmaps are shared, they must not be modified.
+     *
+     * @param key    shadow key, not modified afterwards
+     * @param shadow alpha-only shadow bitmap
+     */
+    public void put(PolygonGeometryKey key, Bitmap shadow) {
+        mCache.put(key, shadow);
+    }
+}
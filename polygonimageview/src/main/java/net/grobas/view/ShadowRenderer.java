@@ -0,0 +1,114 @@
+package net.grobas.view;
+
+import android.graphics.Bitmap;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PathEffect;
+
+import net.grobas.shapes.PolygonGeometryKey;
+import net.grobas.shapes.PolygonShape;
+import net.grobas.shapes.PolygonShapeSpec;
+
+/**
+ * Pre-rendered blurred shadows shared by views and drawables through the {@link ShadowCache}.
+ * Blur filters are software only, shadows are rendered once into alpha-only bitmaps and
+ * tinted with the shadow color when drawn.
+ */
+final class ShadowRenderer {
+
+    private ShadowRenderer() {
+    }
+
+    /**
+     * Blur reaches about twice its radius.
+     *
+     * @param spec shape specs
+     * @return margin around the outline
+     */
+    static float getMargin(PolygonShapeSpec spec) {
+        return (float) Math.ceil(spec.getShadowRadius() * 2);
+    }
+
+    /**
+     * @param spec shape specs
+     * @return left of the shadow bitmap, offset included
+     */
+    static float getLeft(PolygonShapeSpec spec) {
+        return spec.getCenterX() - spec.getDiameter() / 2 - getMargin(spec) + spec.getShadowXOffset();
+    }
+
+    /**
+     * @param spec shape specs
+     * @return top of the shadow bitmap, offset included
+     */
+    static float getTop(PolygonShapeSpec spec) {
+        return spec.getCenterY() - spec.getDiameter() / 2 - getMargin(spec) + spec.getShadowYOffset();
+    }
+
+    /**
+     * Shared shadow key: shape, vertices, rotation, diameter, corner radius and shadow radius,
+     * compared by value.
+     *
+     * @param shape outline shape
+     * @param spec  shape specs
+     * @return new key or null if the shape is not cacheable
+     */
+    static PolygonGeometryKey getKey(PolygonShape shape, PolygonShapeSpec spec) {
+        PolygonGeometryKey key = new PolygonGeometryKey();
+        //circles and squares do not use the shape
+        if (!key.set(spec.getNumVertex() < 3 ? null : shape, spec, false))
+            return null;
+        key.addParameter(spec.getShadowRadius());
+        return key;
+    }
+
+    /**
+     * @param key shadow key, or null
+     * @return cached shadow or null
+     */
+    static Bitmap getCached(PolygonGeometryKey key) {
+        return key != null ? ShadowCache.getInstance().get(key) : null;
+    }
+
+    /**
+     * Renders the blurred outline into a new alpha-only bitmap, cached if it has a key.
+     *
+     * @param spec   shape specs
+     * @param path   polygon outline, circles and squares are drawn from the spec
+     * @param effect outline path effect, or null
+     * @param key    shadow key, or null
+     * @return new shadow bitmap
+     * @throws OutOfMemoryError if the bitmap can not be allocated
+     */
+    static Bitmap render(PolygonShapeSpec spec, Path path, PathEffect effect, PolygonGeometryKey key) {
+        float radius = spec.getDiameter() / 2;
+        float margin = getMargin(spec);
+        int size = (int) Math.ceil(spec.getDiameter() + margin * 2);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ALPHA_8);
+
+        Paint shadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        shadowPaint.setMaskFilter(new BlurMaskFilter(spec.getShadowRadius(), BlurMaskFilter.Blur.NORMAL));
+        shadowPaint.setPathEffect(effect);
+
+        Canvas canvas = new Canvas(bitmap);
+        float centerX = spec.getCenterX();
+        float centerY = spec.getCenterY();
+        canvas.translate(margin + radius - centerX, margin + radius - centerY);
+        switch (spec.getNumVertex()) {
+            case 0: //CIRCLE
+                canvas.drawCircle(centerX, centerY, radius, shadowPaint);
+                break;
+            case 2: //SQUARE
+                canvas.drawRect(centerX - radius, centerY - radius, centerX + radius, centerY + radius, shadowPaint);
+                break;
+            default: //POLYGON
+                canvas.drawPath(path, shadowPaint);
+        }
+
+        if (key != null)
+            ShadowCache.getInstance().put(key, bitmap);
+        return bitmap;
+    }
+}
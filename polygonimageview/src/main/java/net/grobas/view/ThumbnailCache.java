@@ -0,0 +1,178 @@
+package net.grobas.view;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Process-wide LRU cache of cropped thumbnails and their shaders.
+ * Entries are keyed by source image, the source bitmap itself or a caller supplied key,
+ * plus the thumbnail size, and evicted by byte count. Source bitmaps and drawables are only
+ * weakly referenced and compared by identity, their entries are dropped once they are collected.
+ */
+public class ThumbnailCache extends BitmapMemoryCache<ThumbnailCache.Key, ThumbnailCache.Entry> {
+
+    //1/16 of the heap by default
+    private static final int DEFAULT_MEMORY_DIVIDER = 16;
+
+    private static ThumbnailCache sInstance;
+
+    //collected sources
+    private final ReferenceQueue<Object> mCollected = new ReferenceQueue<Object>();
+
+    /**
+     * Returns the shared cache.
+     *
+     * @return shared instance
+     */
+    public static synchronized ThumbnailCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new ThumbnailCache(getDefaultMaxBytes(DEFAULT_MEMORY_DIVIDER));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxBytes max cache size in bytes
+     */
+    public ThumbnailCache(int maxBytes) {
+        super(maxBytes);
+    }
+
+    @Override
+    int getByteCount(Entry value) {
+        return value.getByteCount();
+    }
+
+    /**
+     * Returns a cached thumbnail.
+     *
+     * @param source source image key, compared with equals
+     * @param size   thumbnail size
+     * @return cached entry or null
+     */
+    public Entry get(Object source, int size) {
+        removeCollected();
+        return mCache.get(new Key(source, size, null));
+    }
+
+    /**
+     * Caches a thumbnail and creates its shader.
+     *
+     * @param source    source image key, compared with equals
+     * @param size      thumbnail size
+     * @param thumbnail cropped image
+     * @return the new entry
+     */
+    public Entry put(Object source, int size, Bitmap thumbnail) {
+        removeCollected();
+        Entry entry = new Entry(thumbnail);
+        mCache.put(new Key(source, size, mCollected), entry);
+        return entry;
+    }
+
+    /**
+     * Removes the entries of collected sources.
+     */
+    private void removeCollected() {
+        Reference<?> reference;
+        while ((reference = mCollected.poll()) != null)
+            mCache.remove(((SourceReference) reference).key);
+    }
+
+    /**
+     * Cached thumbnail. The shader is shared between views, do not change its local matrix.
+     */
+    public static final class Entry {
+        private final Bitmap thumbnail;
+        private final BitmapShader shader;
+
+        Entry(Bitmap thumbnail) {
+            this.thumbnail = thumbnail;
+            this.shader = new BitmapShader(thumbnail, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        }
+
+        public Bitmap getThumbnail() {
+            return thumbnail;
+        }
+
+        public BitmapShader getShader() {
+            return shader;
+        }
+
+        int getByteCount() {
+            return thumbnail.getRowBytes() * thumbnail.getHeight();
+        }
+    }
+
+    static final class Key {
+        //caller keys, compared with equals
+        private final Object source;
+        //bitmaps and drawables, compared by identity
+        private final SourceReference reference;
+        private final int size;
+        private final int hash;
+
+        /**
+         * @param source source image or caller key
+         * @param size   thumbnail size
+         * @param queue  queue of collected sources for stored keys, null for lookups
+         */
+        Key(Object source, int size, ReferenceQueue<Object> queue) {
+            this.size = size;
+            if (isIdentity(source) && queue != null) {
+                this.source = null;
+                this.reference = new SourceReference(source, queue, this);
+            } else {
+                this.source = source;
+                this.reference = null;
+            }
+            int sourceHash = isIdentity(source) ? System.identityHashCode(source) : source.hashCode();
+            this.hash = 31 * sourceHash + size;
+        }
+
+        private static boolean isIdentity(Object source) {
+            return source instanceof Bitmap || source instanceof Drawable;
+        }
+
+        private Object getSource() {
+            return reference != null ? reference.get() : source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key key = (Key) o;
+            if (size != key.size || hash != key.hash)
+                return false;
+            Object source = getSource();
+            Object other = key.getSource();
+            if (source == null || other == null) //collected
+                return false;
+            return isIdentity(source) ? source == other : source.equals(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class SourceReference extends WeakReference<Object> {
+        private final Key key;
+
+        SourceReference(Object source, ReferenceQueue<Object> queue, Key key) {
+            super(source, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package net.grobas.view.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded LRU cache with hit, miss and eviction counters.
+ * Same contract as android.util.LruCache, which is not available on our min SDK.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedLruCache<K, V> {
+
+    private final LinkedHashMap<K, V> map;
+
+    private int size;
+    private int maxSize;
+
+    private int putCount;
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    /**
+     * @param maxSize max size in the units returned by {@link #sizeOf(Object, Object)}
+     */
+    public BoundedLruCache(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize < 0");
+
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<K, V>(0, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached value and moves it to the head of the queue.
+     *
+     * @param key entry key
+     * @return cached value or null
+     */
+    public final synchronized V get(K key) {
+        if (key == null)
+            throw new NullPointerException("key == null");
+
+        V value = map.get(key);
+        if (value != null) {
+            hitCount++;
+            return value;
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Caches a value and trims the cache if needed.
+     *
+     * @param key   entry key
+     * @param value entry value
+     * @return previous value or null
+     */
+    public final V put(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException("key == null || value == null");
+
+        V previous;
+        synchronized (this) {
+            putCount++;
+            size += safeSizeOf(key, value);
+            previous = map.put(key, value);
+            if (previous != null)
+                size -= safeSizeOf(key, previous);
+        }
+
+        if (previous != null)
+            entryRemoved(false, key, previous, value);
+
+        trimToSize(maxSize);
+        return previous;
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param key entry key
+     * @return removed value or null
+     */
+    public final V remove(K key) {
+        if (key == null)
+            throw new NullPointerException("key == null");
+
+        V previous;
+        synchronized (this) {
+            previous = map.remove(key);
+            if (previous != null)
+                size -= safeSizeOf(key, previous);
+        }
+
+        if (previous != null)
+            entryRemoved(false, key, previous, null);
+
+        return previous;
+    }
+
+    /**
+     * Evicts eldest entries until the total size is below the requested size.
+     *
+     * @param maxSize target size, -1 evicts everything
+     */
+    public void trimToSize(int maxSize) {
+        while (true) {
+            K key;
+            V value;
+            synchronized (this) {
+                if (size <= maxSize || map.isEmpty())
+                    break;
+
+                Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+                Map.Entry<K, V> eldest = iterator.next();
+                key = eldest.getKey();
+                value = eldest.getValue();
+                iterator.remove();
+                size -= safeSizeOf(key, value);
+                evictionCount++;
+            }
+            entryRemoved(true, key, value, null);
+        }
+    }
+
+    /**
+     * Changes the max size and trims the cache if needed.
+     *
+     * @param maxSize new max size
+     */
+    public void resize(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize < 0");
+
+        synchronized (this) {
+            this.maxSize = maxSize;
+        }
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public final void evictAll() {
+        trimToSize(-1);
+    }
+
+    /**
+     * Size of an entry, 1 by default.
+     *
+     * @param key   entry key
+     * @param value entry value
+     * @return size in user units
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    /**
+     * Called when an entry is evicted, removed or replaced. Called without holding the lock.
+     *
+     * @param evicted  true if removed to free space
+     * @param key      entry key
+     * @param oldValue removed value
+     * @param newValue new value or null
+     */
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0)
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        return result;
+    }
+
+    public final synchronized int size() {
+        return size;
+    }
+
+    public final synchronized int maxSize() {
+        return maxSize;
+    }
+
+    public final synchronized int hitCount() {
+        return hitCount;
+    }
+
+    public final synchronized int missCount() {
+        return missCount;
+    }
+
+    public final synchronized int putCount() {
+        return putCount;
+    }
+
+    public final synchronized int evictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public final synchronized String toString() {
+        int accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return String.format("BoundedLruCache[maxSize=%d,hits=%d,misses=%d,evictions=%d,hitRate=%d%%]",
+                maxSize, hitCount, missCount, evictionCount, hitPercent);
+    }
+}
@@ -49,6 +49,74 @@ public class GeometryUtil {
         return Arrays.asList(p1, p2);
     }
 
+    /**
+     * Intersection between line, determined for two points, and a circle with radius x.
+     * Same as {@link #getCircleLineIntersectionPoint(Point, Point, Point, double)} without allocations.
+     *
+     * @param pointAX line point a x
+     * @param pointAY line point a y
+     * @param pointBX line point b x
+     * @param pointBY line point b y
+     * @param centerX circle center x
+     * @param centerY circle center y
+     * @param radius  circle radius
+     * @param out     receives x1, y1, x2, y2, at least 4 floats
+     * @return number of intersection points, 0, 1 or 2
+     */
+    public static int getCircleLineIntersectionPoint(float pointAX, float pointAY, float pointBX, float pointBY,
+                                                     float centerX, float centerY, float radius, float[] out) {
+        double baX = pointBX - pointAX;
+        double baY = pointBY - pointAY;
+        double caX = centerX - pointAX;
+        double caY = centerY - pointAY;
+
+        double a = baX * baX + baY * baY;
+        double bBy2 = baX * caX + baY * caY;
+        double c = caX * caX + caY * caY - (double) radius * radius;
+
+        double pBy2 = bBy2 / a;
+        double q = c / a;
+
+        double disc = pBy2 * pBy2 - q;
+        if (disc < 0) {
+            return 0;
+        }
+
+        double tmpSqrt = Math.sqrt(disc);
+        double abScalingFactor1 = -pBy2 + tmpSqrt;
+        double abScalingFactor2 = -pBy2 - tmpSqrt;
+
+        out[0] = (float) (pointAX - baX * abScalingFactor1);
+        out[1] = (float) (pointAY - baY * abScalingFactor1);
+        if (disc == 0) {
+            return 1;
+        }
+        out[2] = (float) (pointAX - baX * abScalingFactor2);
+        out[3] = (float) (pointAY - baY * abScalingFactor2);
+        return 2;
+    }
+
+    /**
+     * Even-odd point in polygon test, without allocations.
+     *
+     * @param points polygon vertices, x and y pairs
+     * @param count  number of vertices
+     * @param x      point x
+     * @param y      point y
+     * @return true if the point is inside
+     */
+    public static boolean isInsidePolygon(float[] points, int count, float x, float y) {
+        boolean inside = false;
+        for (int i = 0, j = count - 1; i < count; j = i++) {
+            float iX = points[i * 2], iY = points[i * 2 + 1];
+            float jX = points[j * 2], jY = points[j * 2 + 1];
+            //edge crosses the horizontal line of the point, at its right
+            if ((iY > y) != (jY > y) && x < (jX - iX) * (y - iY) / (jY - iY) + iX)
+                inside = !inside;
+        }
+        return inside;
+    }
+
     public static class Point {
         public double x, y;
 
@@ -0,0 +1,190 @@
+package net.grobas.view.util;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes images subsampled to a target size, never keeping the full size bitmap in memory.
+ * Long images are decoded through their centered square region only.
+ */
+public class SampledBitmapDecoder {
+
+    private static final String TAG = "SampledBitmapDecoder";
+    //long side / short side ratio from which only the center is decoded
+    private static final float REGION_RATIO = 4f / 3f;
+
+    /**
+     * Decodes a resource image.
+     *
+     * @param resources  resources
+     * @param resId      image resource
+     * @param targetSize size of the center crop square
+     * @return bitmap or null if it's not a bitmap resource
+     */
+    public static Bitmap decodeResource(Resources resources, int resId, int targetSize) {
+        try {
+            return decode(new ResourceSource(resources, resId), targetSize);
+        } catch (Resources.NotFoundException e) {
+            Log.e(TAG, "Unable to decode resource " + resId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes a content, file or resource uri.
+     *
+     * @param resolver   content resolver
+     * @param uri        image uri
+     * @param targetSize size of the center crop square
+     * @return bitmap or null if it can not be decoded
+     */
+    public static Bitmap decodeUri(ContentResolver resolver, Uri uri, int targetSize) {
+        return decode(new UriSource(resolver, uri), targetSize);
+    }
+
+    /**
+     * Largest power of two sample that keeps the short side over the target size.
+     *
+     * @param width      image width
+     * @param height     image height
+     * @param targetSize size of the center crop square
+     * @return sample size
+     */
+    public static int calculateInSampleSize(int width, int height, int targetSize) {
+        int shortSide = Math.min(width, height);
+        int sampleSize = 1;
+        while (shortSide / (sampleSize * 2) >= targetSize)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    private static Bitmap decode(Source source, int targetSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        if (!decodeStream(source, options) || options.outWidth <= 0 || options.outHeight <= 0)
+            return null;
+
+        int width = options.outWidth;
+        int height = options.outHeight;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(width, height, targetSize);
+
+        float ratio = (float) Math.max(width, height) / Math.min(width, height);
+        if (ratio >= REGION_RATIO && Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD_MR1) {
+            Bitmap bitmap = decodeCenterRegion(source, width, height, options);
+            if (bitmap != null)
+                return bitmap;
+        }
+
+        InputStream stream = null;
+        try {
+            stream = source.open();
+            return BitmapFactory.decodeStream(stream, null, options);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to decode image", e);
+            return null;
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "OutOfMemory during image decoding");
+            return null;
+        } finally {
+            close(stream);
+        }
+    }
+
+    private static boolean decodeStream(Source source, BitmapFactory.Options options) {
+        InputStream stream = null;
+        try {
+            stream = source.open();
+            BitmapFactory.decodeStream(stream, null, options);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read image", e);
+            return false;
+        } finally {
+            close(stream);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+    private static Bitmap decodeCenterRegion(Source source, int width, int height, BitmapFactory.Options options) {
+        int side = Math.min(width, height);
+        int left = (width - side) / 2;
+        int top = (height - side) / 2;
+
+        InputStream stream = null;
+        BitmapRegionDecoder decoder = null;
+        try {
+            stream = source.open();
+            decoder = BitmapRegionDecoder.newInstance(stream, false);
+            return decoder.decodeRegion(new Rect(left, top, left + side, top + side), options);
+        } catch (IOException e) {
+            //not supported format, decode it all
+            return null;
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "OutOfMemory during region decoding");
+            return null;
+        } finally {
+            if (decoder != null)
+                decoder.recycle();
+            close(stream);
+        }
+    }
+
+    private static void close(InputStream stream) {
+        if (stream == null)
+            return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            //ignored
+        }
+    }
+
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private static final class ResourceSource implements Source {
+        private final Resources resources;
+        private final int resId;
+
+        ResourceSource(Resources resources, int resId) {
+            this.resources = resources;
+            this.resId = resId;
+        }
+
+        @Override
+        public InputStream open() {
+            return resources.openRawResource(resId);
+        }
+    }
+
+    private static final class UriSource implements Source {
+        private final ContentResolver resolver;
+        private final Uri uri;
+
+        UriSource(ContentResolver resolver, Uri uri) {
+            this.resolver = resolver;
+            this.uri = uri;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            InputStream stream = resolver.openInputStream(uri);
+            if (stream == null)
+                throw new IOException("Unable to open " + uri);
+            return stream;
+        }
+    }
+}